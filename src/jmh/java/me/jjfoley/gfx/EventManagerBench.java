@@ -0,0 +1,82 @@
+package me.jjfoley.gfx;
+
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long does it take to handle input events from AWT, and to ask about the
+ * state of the keys and mouse?
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class EventManagerBench {
+	private GFX app;
+	private EventManager events;
+	private KeyEvent press;
+	private KeyEvent release;
+	private MouseEvent move;
+	private MouseEvent click;
+
+	@Setup
+	public void setup() {
+		app = new GFX() {
+			@Override
+			public void draw(Graphics2D g) {
+			}
+		};
+		events = app.getEventManager();
+		Canvas source = new Canvas();
+		long when = System.currentTimeMillis();
+		press = new KeyEvent(source, KeyEvent.KEY_PRESSED, when, 0, KeyEvent.VK_SPACE, ' ');
+		release = new KeyEvent(source, KeyEvent.KEY_RELEASED, when, 0, KeyEvent.VK_SPACE, ' ');
+		move = new MouseEvent(source, MouseEvent.MOUSE_MOVED, when, 0, 120, 80, 0, false);
+		click = new MouseEvent(source, MouseEvent.MOUSE_RELEASED, when, 0, 120, 80, 1, false);
+	}
+
+	@Benchmark
+	public void keyPressAndRelease() {
+		events.keyPressed(press);
+		events.keyReleased(release);
+	}
+
+	@Benchmark
+	public boolean isKeyDown() {
+		events.keyPressed(press);
+		return app.isKeyDown(KeyEvent.VK_SPACE);
+	}
+
+	@Benchmark
+	public void mouseMoved() {
+		events.mouseMoved(move);
+	}
+
+	@Benchmark
+	public IntPoint getMouseLocation() {
+		events.mouseMoved(move);
+		return app.getMouseLocation();
+	}
+
+	@Benchmark
+	public IntPoint clickAndProcess() {
+		events.mouseReleased(click);
+		return app.processClick();
+	}
+}
@@ -0,0 +1,81 @@
+package me.jjfoley.gfx;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How fast are {@link IntPoint#hashCode()} and {@link IntPoint#equals}, alone
+ * and inside a {@link HashSet}, compared with a {@link PointSet}?
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class IntPointBench {
+	@Param({ "100", "10000" })
+	public int points;
+
+	private IntPoint[] queries;
+	private Set<IntPoint> set;
+	private PointSet pointSet;
+	private int next;
+
+	@Setup
+	public void setup() {
+		Random rand = new Random(42);
+		set = new HashSet<>();
+		pointSet = new PointSet();
+		queries = new IntPoint[points];
+		for (int i = 0; i < points; i++) {
+			IntPoint p = new IntPoint(rand.nextInt(1000), rand.nextInt(1000));
+			set.add(p);
+			pointSet.add(p);
+			// Copies, so that equals has to compare coordinates.
+			queries[i] = new IntPoint(p);
+		}
+	}
+
+	private IntPoint nextQuery() {
+		IntPoint p = queries[next];
+		next = (next + 1) % queries.length;
+		return p;
+	}
+
+	@Benchmark
+	public int hashCodes() {
+		return nextQuery().hashCode();
+	}
+
+	@Benchmark
+	public boolean equal() {
+		IntPoint p = nextQuery();
+		return p.equals(queries[0]);
+	}
+
+	@Benchmark
+	public boolean setContains() {
+		return set.contains(nextQuery());
+	}
+
+	@Benchmark
+	public boolean pointSetContains() {
+		IntPoint p = nextQuery();
+		return pointSet.contains(p.x, p.y);
+	}
+}
@@ -0,0 +1,87 @@
+package me.jjfoley.gfx;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long does one whole frame take to render offscreen, for different window
+ * sizes and amounts of stuff on screen?
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBench {
+	@Param({ "320x240", "1280x720", "1920x1080" })
+	public String size;
+
+	@Param({ "10", "1000" })
+	public int shapes;
+
+	private Scene app;
+
+	@Setup
+	public void setup() {
+		String[] wh = size.split("x");
+		app = new Scene(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), shapes);
+		// Switch the app to its offscreen view.
+		app.runHeadless(1, null);
+	}
+
+	@Benchmark
+	public void render() {
+		app.renderFrame();
+	}
+
+	/**
+	 * A mix of rectangles, ovals and text in random places.
+	 */
+	static class Scene extends GFX {
+		private final int[] xs;
+		private final int[] ys;
+		private final Color[] colors;
+		private final TextBox label = new TextBox("Benchmark");
+
+		Scene(int width, int height, int shapes) {
+			super(width, height);
+			Random rand = new Random(42);
+			xs = new int[shapes];
+			ys = new int[shapes];
+			colors = new Color[shapes];
+			for (int i = 0; i < shapes; i++) {
+				xs[i] = rand.nextInt(width);
+				ys[i] = rand.nextInt(height);
+				colors[i] = Util.getRandomColor(0.8, rand);
+			}
+		}
+
+		@Override
+		public void draw(Graphics2D g) {
+			for (int i = 0; i < xs.length; i++) {
+				g.setColor(colors[i]);
+				if (i % 2 == 0) {
+					g.fillRect(xs[i], ys[i], 20, 20);
+				} else {
+					g.fillOval(xs[i], ys[i], 20, 20);
+				}
+			}
+			label.draw(g);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package me.jjfoley.gfx;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Is drawing many small sprites faster from a {@link SpriteAtlas} than from
+ * one image each?
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SpriteAtlasBench {
+	@Param({ "100", "2000" })
+	public int sprites;
+
+	private BufferedImage target;
+	private Graphics2D g;
+	private BufferedImage[] images;
+	private SpriteAtlas atlas;
+	private int[] handles;
+	private int[] xs;
+	private int[] ys;
+
+	@Setup
+	public void setup() {
+		Random rand = new Random(42);
+		target = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+		g = target.createGraphics();
+		// 64 different 16x16 sprites.
+		images = new BufferedImage[64];
+		atlas = new SpriteAtlas(256);
+		for (int i = 0; i < images.length; i++) {
+			BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D ig = img.createGraphics();
+			ig.setColor(Util.getRandomColor(0.8, rand));
+			ig.fillOval(0, 0, 16, 16);
+			ig.setColor(Color.black);
+			ig.drawOval(0, 0, 15, 15);
+			ig.dispose();
+			images[i] = img;
+			atlas.add(img);
+		}
+		handles = new int[sprites];
+		xs = new int[sprites];
+		ys = new int[sprites];
+		for (int i = 0; i < sprites; i++) {
+			handles[i] = rand.nextInt(images.length);
+			xs[i] = rand.nextInt(1280 - 16);
+			ys[i] = rand.nextInt(720 - 16);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public void separateImages() {
+		for (int i = 0; i < sprites; i++) {
+			g.drawImage(images[handles[i]], xs[i], ys[i], null);
+		}
+	}
+
+	@Benchmark
+	public void atlasBatch() {
+		atlas.drawBatch(g, handles, xs, ys, sprites);
+	}
+}
@@ -0,0 +1,96 @@
+package me.jjfoley.gfx;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long does it take to create, re-measure and draw a {@link TextBox}?
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class TextBoxBench {
+	@Param({ "PLAIN", "BOLD", "MONOSPACED" })
+	public String font;
+
+	@Param({ "4", "32", "256" })
+	public int length;
+
+	private Font theFont;
+	/**
+	 * Two different strings, so that setString has to measure every time.
+	 */
+	private String[] texts;
+	private int which;
+	private TextBox box;
+	private BufferedImage image;
+	private Graphics2D g;
+
+	@Setup
+	public void setup() {
+		switch (font) {
+		case "BOLD":
+			theFont = TextBox.BOLD_FONT;
+			break;
+		case "MONOSPACED":
+			theFont = new Font(Font.MONOSPACED, Font.PLAIN, 16);
+			break;
+		default:
+			theFont = TextBox.PLAIN_FONT;
+			break;
+		}
+		texts = new String[] { makeText(length, 'a'), makeText(length, 'A') };
+		box = new TextBox(10, 10, texts[0], theFont, Color.white);
+		image = new BufferedImage(1024, 128, BufferedImage.TYPE_INT_RGB);
+		g = image.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	private static String makeText(int length, char first) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) (first + (i % 26)));
+		}
+		return sb.toString();
+	}
+
+	@Benchmark
+	public TextBox create() {
+		return new TextBox(0, 0, texts[0], theFont, Color.white);
+	}
+
+	@Benchmark
+	public TextBox setString() {
+		which ^= 1;
+		box.setString(texts[which]);
+		return box;
+	}
+
+	@Benchmark
+	public void draw() {
+		box.draw(g);
+	}
+}
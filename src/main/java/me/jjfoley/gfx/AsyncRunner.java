@@ -0,0 +1,149 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * This class runs the background tasks of one {@link GFX} and hands their
+ * results back at the start of a frame, a few at a time.
+ * 
+ * @author jfoley
+ * 
+ */
+class AsyncRunner {
+	/**
+	 * How many results are handed back per frame, by default.
+	 */
+	static final int DEFAULT_BUDGET = 16;
+
+	/**
+	 * The default executor, shared by every application and made when first
+	 * needed.
+	 */
+	private static volatile ExecutorService shared;
+
+	private final GFX app;
+	/**
+	 * Finished tasks, in the order they finished.
+	 */
+	private final ConcurrentLinkedQueue<AsyncTask<?>> done = new ConcurrentLinkedQueue<>();
+	/**
+	 * Tasks started and not yet delivered or cancelled.
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile ExecutorService executor;
+	private volatile int budget = DEFAULT_BUDGET;
+
+	AsyncRunner(GFX app) {
+		this.app = app;
+	}
+
+	/**
+	 * @return The executor shared by every application that did not pick one.
+	 */
+	static ExecutorService sharedExecutor() {
+		ExecutorService e = shared;
+		if (e == null) {
+			synchronized (AsyncRunner.class) {
+				e = shared;
+				if (e == null) {
+					e = shared = AsyncThreads.create("GFX-async");
+				}
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * @param executor Where to run tasks, or null for the shared default.
+	 */
+	void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param budget How many results to hand back per frame.
+	 */
+	void setBudget(int budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("budget must be at least 1: " + budget);
+		}
+		this.budget = budget;
+	}
+
+	/**
+	 * @return How many results to hand back per frame.
+	 */
+	int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return How many tasks are running or waiting to be handed back.
+	 */
+	int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Start a task.
+	 */
+	<T> AsyncTask<T> submit(Callable<? extends T> work, Consumer<? super T> onDone,
+			Consumer<? super Throwable> onError) {
+		AsyncTask<T> task = new AsyncTask<>(this, work, onDone, onError);
+		ExecutorService e = executor;
+		if (e == null) {
+			e = sharedExecutor();
+		}
+		pending.incrementAndGet();
+		try {
+			task.setFuture(e.submit(task::run));
+		} catch (RejectedExecutionException ex) {
+			// Report it on the frame thread like any other failure.
+			task.fail(ex);
+		}
+		return task;
+	}
+
+	/**
+	 * Called by a task when its work finishes, on its own thread.
+	 */
+	void completed(AsyncTask<?> task) {
+		done.add(task);
+		// Make sure a frame comes along to pick it up.
+		app.requestRedraw();
+	}
+
+	/**
+	 * Called by a task cancelled before its work finished.
+	 */
+	void cancelled() {
+		pending.decrementAndGet();
+	}
+
+	/**
+	 * Hand back finished results, up to the budget; the rest wait for the next
+	 * frame. Cancelled tasks don't count.
+	 * 
+	 * @return How many results were handed back.
+	 */
+	int deliver() {
+		final int max = budget;
+		int delivered = 0;
+		AsyncTask<?> task;
+		while (delivered < max && (task = done.poll()) != null) {
+			pending.decrementAndGet();
+			if (task.deliver()) {
+				delivered++;
+			}
+		}
+		if (!done.isEmpty()) {
+			app.requestRedraw();
+		}
+		return delivered;
+	}
+}
@@ -0,0 +1,148 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A piece of slow work started by {@link GFX#runAsync}. The work runs on a
+ * background thread; its result is handed to you on the frame thread, at the
+ * start of a later frame (before {@link GFX#update}), so you can change what
+ * {@link GFX#draw} uses without any locks.
+ * 
+ * @author jfoley
+ * 
+ * @param <T> The type of the result.
+ */
+public class AsyncTask<T> {
+	private static final int PENDING = 0;
+	private static final int READY = 1;
+	private static final int DELIVERED = 2;
+	private static final int CANCELLED = 3;
+
+	private final AsyncRunner runner;
+	private final Callable<? extends T> work;
+	private final Consumer<? super T> onDone;
+	private final Consumer<? super Throwable> onError;
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+	private volatile Future<?> future;
+	private T result;
+	private Throwable error;
+
+	AsyncTask(AsyncRunner runner, Callable<? extends T> work, Consumer<? super T> onDone,
+			Consumer<? super Throwable> onError) {
+		this.runner = runner;
+		this.work = work;
+		this.onDone = onDone;
+		this.onError = onError;
+	}
+
+	/**
+	 * Remember how to interrupt the work.
+	 */
+	void setFuture(Future<?> future) {
+		this.future = future;
+		if (state.get() == CANCELLED) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * The body of the task, on a background thread.
+	 */
+	void run() {
+		if (state.get() != PENDING) {
+			return;
+		}
+		try {
+			result = work.call();
+		} catch (Throwable t) {
+			error = t;
+		}
+		// The writes above are published by this CAS.
+		if (state.compareAndSet(PENDING, READY)) {
+			runner.completed(this);
+		}
+	}
+
+	/**
+	 * Fail without running, e.g., if the executor was full.
+	 */
+	void fail(Throwable t) {
+		error = t;
+		if (state.compareAndSet(PENDING, READY)) {
+			runner.completed(this);
+		}
+	}
+
+	/**
+	 * Hand the result to the callback, on the frame thread.
+	 * 
+	 * @return false if the task was cancelled instead.
+	 */
+	boolean deliver() {
+		if (!state.compareAndSet(READY, DELIVERED)) {
+			return false;
+		}
+		if (error == null) {
+			if (onDone != null) {
+				onDone.accept(result);
+			}
+		} else if (onError != null) {
+			onError.accept(error);
+		} else {
+			throw new RuntimeException("Background task failed", error);
+		}
+		return true;
+	}
+
+	/**
+	 * Cancel the task: its callbacks will not be called, and if it is running, its
+	 * thread is interrupted.
+	 * 
+	 * @return true if it was cancelled; false if its result was already
+	 *         delivered (or it was already cancelled).
+	 */
+	public boolean cancel() {
+		while (true) {
+			int s = state.get();
+			if (s == DELIVERED || s == CANCELLED) {
+				return false;
+			}
+			if (state.compareAndSet(s, CANCELLED)) {
+				if (s == PENDING) {
+					// It will never reach the finished queue.
+					runner.cancelled();
+				}
+				Future<?> f = future;
+				if (f != null) {
+					f.cancel(true);
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return true once the work has finished, even if its result has not been
+	 *         delivered yet.
+	 */
+	public boolean isFinished() {
+		return state.get() == READY || state.get() == DELIVERED;
+	}
+
+	/**
+	 * @return true once the result has been handed to the callback.
+	 */
+	public boolean isDelivered() {
+		return state.get() == DELIVERED;
+	}
+
+	/**
+	 * @return true if {@link #cancel()} was called in time.
+	 */
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+}
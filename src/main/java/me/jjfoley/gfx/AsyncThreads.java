@@ -0,0 +1,52 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the default executor for {@link GFX#runAsync}. This is the version
+ * for Java 8 to 20: a small pool of daemon threads with a bounded queue. The
+ * jar also has a Java 21 version of this class (in src/main/java21) that uses
+ * virtual threads instead.
+ * 
+ * @author jfoley
+ * 
+ */
+final class AsyncThreads {
+	/**
+	 * How many tasks can wait for a thread before new ones are rejected.
+	 */
+	static final int QUEUE_CAPACITY = 4096;
+
+	private AsyncThreads() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return true if tasks run on virtual threads.
+	 */
+	static boolean isVirtual() {
+		return false;
+	}
+
+	/**
+	 * @param name What to call the threads.
+	 * @return A new executor for background tasks.
+	 */
+	static ExecutorService create(String name) {
+		final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+					Thread t = new Thread(r, name + "-" + count.getAndIncrement());
+					t.setDaemon(true);
+					return t;
+				});
+		// Let the threads go away when there is nothing to do.
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
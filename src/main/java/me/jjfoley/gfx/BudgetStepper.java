@@ -0,0 +1,200 @@
+package me.jjfoley.gfx;
+
+/**
+ * The part shared by {@link QualityController} and
+ * {@link RenderScaleController}: it watches how long recent frames took to
+ * draw and decides when to step down (the slowest frames are over budget) or
+ * up (a long calm stretch well under budget). The budget is what is left of
+ * each frame after update and present, since only drawing gets faster when a
+ * controller steps down. What a step is, is up to the controller. Waiting
+ * for a full window of frames after each step, and waiting twice as long to
+ * step up after a step up had to be taken back, keeps it from flickering
+ * between two levels.
+ * 
+ * It is used from the thread drawing frames, while holding the controller's
+ * lock.
+ * 
+ * @author jfoley
+ * 
+ */
+final class BudgetStepper {
+	/**
+	 * {@link #observe} says: stay where we are.
+	 */
+	static final int HOLD = 0;
+	/**
+	 * {@link #observe} says: step down, to draw faster.
+	 */
+	static final int DOWN = 1;
+	/**
+	 * {@link #observe} says: step up, there is time to spare.
+	 */
+	static final int UP = 2;
+
+	/**
+	 * The most the wait before stepping up can grow.
+	 */
+	private static final int MAX_BACKOFF = 16;
+
+	private final RollingHistogram drawn;
+	/**
+	 * The rest of each frame's work (update and present), which the budget for
+	 * drawing has to leave room for.
+	 */
+	private final RollingHistogram others;
+	private volatile double targetFps = 0;
+	private volatile double downThreshold = 0.9;
+	private volatile double upThreshold;
+	private volatile int upDelay;
+	/**
+	 * How many frames in a row have been under {@link #upThreshold}.
+	 */
+	private int calmFrames;
+	/**
+	 * Multiplies {@link #upDelay}; doubled each time a step up had to be taken
+	 * back, so a level that can't keep up is not retried every few frames.
+	 */
+	private int backoff = 1;
+	private boolean lastChangeUp;
+	private long changes;
+	/**
+	 * What the last full window looked like: its slowest 10% of draw times, and
+	 * the time there was for drawing.
+	 */
+	private long slow;
+	private double budget;
+
+	/**
+	 * @param window      How many frames to look at before deciding.
+	 * @param upThreshold The default fraction of the budget to step up under.
+	 * @param upDelay     The default number of calm frames before stepping up.
+	 */
+	BudgetStepper(int window, double upThreshold, int upDelay) {
+		this.drawn = new RollingHistogram(window);
+		this.others = new RollingHistogram(window);
+		this.upThreshold = upThreshold;
+		this.upDelay = upDelay;
+	}
+
+	/**
+	 * @param fps The frame rate to hold, or 0 to use the scheduler's.
+	 */
+	void setTargetFps(double fps) {
+		this.targetFps = fps;
+	}
+
+	/**
+	 * @param down Step down above this fraction of the budget.
+	 * @param up   Step up below this fraction of the budget.
+	 */
+	void setThresholds(double down, double up) {
+		if (!(up > 0 && up < down)) {
+			throw new IllegalArgumentException("need 0 < up < down: " + up + ", " + down);
+		}
+		this.downThreshold = down;
+		this.upThreshold = up;
+	}
+
+	/**
+	 * @param frames How many calm frames in a row before stepping up.
+	 */
+	void setUpDelay(int frames) {
+		this.upDelay = frames;
+	}
+
+	/**
+	 * @return The fraction of the budget to step down above.
+	 */
+	double getDownThreshold() {
+		return downThreshold;
+	}
+
+	/**
+	 * @return The fraction of the budget to step up below.
+	 */
+	double getUpThreshold() {
+		return upThreshold;
+	}
+
+	/**
+	 * Look at one more frame.
+	 * 
+	 * @param drawNanos  How long the frame spent clearing and drawing.
+	 * @param otherNanos How long the frame spent on everything else, e.g.,
+	 *                   update and present, but not waiting.
+	 * @param defaultFps The frame rate to hold if none was set.
+	 * @return {@link #HOLD}, {@link #DOWN} or {@link #UP}.
+	 */
+	int observe(long drawNanos, long otherNanos, double defaultFps) {
+		if (drawNanos <= 0) {
+			return HOLD;
+		}
+		drawn.record(drawNanos);
+		others.record(Math.max(0, otherNanos));
+		if (drawn.size() < drawn.getCapacity()) {
+			return HOLD;
+		}
+		final double fps = targetFps > 0 ? targetFps : defaultFps;
+		// Drawing gets whatever the rest of a typical frame leaves.
+		budget = Math.max(0, 1e9 / fps - others.percentile(0.5));
+		slow = drawn.percentile(0.9);
+		if (slow > budget * downThreshold) {
+			calmFrames = 0;
+			return DOWN;
+		}
+		if (slow < budget * upThreshold) {
+			return ++calmFrames >= (long) upDelay * backoff ? UP : HOLD;
+		}
+		calmFrames = 0;
+		return HOLD;
+	}
+
+	/**
+	 * @return The slowest 10% of draw times in the last full window, in
+	 *         nanoseconds.
+	 */
+	long getSlowNanos() {
+		return slow;
+	}
+
+	/**
+	 * @return The time there was for drawing each frame in the last full window,
+	 *         in nanoseconds.
+	 */
+	double getBudgetNanos() {
+		return budget;
+	}
+
+	/**
+	 * The controller took a step: judge the new level on its own frames.
+	 * 
+	 * @param up true if it stepped up.
+	 */
+	void stepped(boolean up) {
+		if (!up && lastChangeUp) {
+			backoff = Math.min(backoff * 2, MAX_BACKOFF);
+		}
+		lastChangeUp = up;
+		changes++;
+		drawn.clear();
+		calmFrames = 0;
+	}
+
+	/**
+	 * The level was set by hand: forget everything and start watching again.
+	 */
+	void reset() {
+		drawn.clear();
+		others.clear();
+		calmFrames = 0;
+		backoff = 1;
+		lastChangeUp = false;
+	}
+
+	/**
+	 * @return How many steps have been taken.
+	 */
+	long getChanges() {
+		return changes;
+	}
+}
@@ -0,0 +1,149 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Which part of a big world is on the screen: the world point at the
+ * top-left corner of the window, and how far we are zoomed in. Move it to
+ * scroll, and use it to turn mouse positions into world positions.
+ * 
+ * <pre>
+ * {@code
+camera.centerOn(player.x, player.y, getWidth(), getHeight());
+map.draw(g, camera, getWidth(), getHeight());
+}
+ * </pre>
+ * 
+ * @author jfoley
+ * 
+ */
+public class Camera {
+	private double x;
+	private double y;
+	private double zoom = 1.0;
+
+	/**
+	 * Create a camera looking at (0, 0) at zoom 1.
+	 */
+	public Camera() {
+	}
+
+	/**
+	 * @return The world x at the left edge of the screen.
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * @return The world y at the top edge of the screen.
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @param x The world x to put at the left edge of the screen.
+	 * @param y The world y to put at the top edge of the screen.
+	 */
+	public void setPosition(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Scroll by some amount.
+	 * 
+	 * @param dx How far to move right, in world units.
+	 * @param dy How far to move down, in world units.
+	 */
+	public void move(double dx, double dy) {
+		this.x += dx;
+		this.y += dy;
+	}
+
+	/**
+	 * Put a world point in the middle of the screen.
+	 * 
+	 * @param worldX     The point.
+	 * @param worldY     The point.
+	 * @param viewWidth  The width of the screen, e.g., {@link GFX#getWidth()}.
+	 * @param viewHeight The height of the screen.
+	 */
+	public void centerOn(double worldX, double worldY, int viewWidth, int viewHeight) {
+		this.x = worldX - viewWidth / (2 * zoom);
+		this.y = worldY - viewHeight / (2 * zoom);
+	}
+
+	/**
+	 * @return How many screen pixels one world unit takes.
+	 */
+	public double getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * @param zoom How many screen pixels one world unit takes: 2 is zoomed in, 0.5
+	 *             is zoomed out.
+	 */
+	public void setZoom(double zoom) {
+		if (!(zoom > 0)) {
+			throw new IllegalArgumentException("zoom must be positive: " + zoom);
+		}
+		this.zoom = zoom;
+	}
+
+	/**
+	 * @param screenX A position on the screen, e.g., the mouse.
+	 * @return The world x under it.
+	 */
+	public double toWorldX(double screenX) {
+		return x + screenX / zoom;
+	}
+
+	/**
+	 * @param screenY A position on the screen, e.g., the mouse.
+	 * @return The world y under it.
+	 */
+	public double toWorldY(double screenY) {
+		return y + screenY / zoom;
+	}
+
+	/**
+	 * @param worldX A position in the world.
+	 * @return Where it is on the screen.
+	 */
+	public double toScreenX(double worldX) {
+		return (worldX - x) * zoom;
+	}
+
+	/**
+	 * @param worldY A position in the world.
+	 * @return Where it is on the screen.
+	 */
+	public double toScreenY(double worldY) {
+		return (worldY - y) * zoom;
+	}
+
+	/**
+	 * @param viewWidth  The width of the screen.
+	 * @param viewHeight The height of the screen.
+	 * @return The part of the world that is on the screen.
+	 */
+	public Rectangle2D getVisible(int viewWidth, int viewHeight) {
+		return new Rectangle2D.Double(x, y, viewWidth / zoom, viewHeight / zoom);
+	}
+
+	/**
+	 * Change a graphics object so that drawing at world positions lands in the
+	 * right place on the screen.
+	 * 
+	 * @param g The graphics to change; use a {@link Graphics2D#create() copy} if
+	 *          you need the original afterwards.
+	 */
+	public void apply(Graphics2D g) {
+		g.scale(zoom, zoom);
+		g.translate(-x, -y);
+	}
+}
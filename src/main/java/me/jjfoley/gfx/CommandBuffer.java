@@ -0,0 +1,468 @@
+package me.jjfoley.gfx;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A recording of drawing commands that can be played back onto a
+ * {@link Graphics2D} later, as many times as you like.
+ * 
+ * Recording instead of drawing right away lets us do two things when playing
+ * back: skip anything that is completely outside of the window, and, inside
+ * layers you mark as commutative (where the order of drawing does not
+ * matter), group commands by color and font so they are changed as rarely as
+ * possible. If the picture does not change between frames, record it once and
+ * replay it every frame.
+ * 
+ * <pre>
+ * {@code
+CommandBuffer commands = new CommandBuffer();
+
+public void draw(Graphics2D g) {
+	if (commands.isEmpty()) {
+		commands.beginLayer(true);
+		for (Star s : stars) {
+			commands.setColor(s.color);
+			commands.fillOval(s.x, s.y, 3, 3);
+		}
+	}
+	commands.replay(g, windowAsRectangle());
+}
+}
+ * </pre>
+ * 
+ * Commands are kept in primitive arrays, so a recording of thousands of
+ * shapes is only a few objects. It is not thread-safe.
+ * 
+ * @author jfoley
+ *
+ */
+public class CommandBuffer {
+	private static final int FILL_RECT = 0;
+	private static final int DRAW_RECT = 1;
+	private static final int FILL_OVAL = 2;
+	private static final int DRAW_OVAL = 3;
+	private static final int DRAW_LINE = 4;
+	private static final int DRAW_STRING = 5;
+	private static final int DRAW_IMAGE = 6;
+
+	/**
+	 * How many commands we have.
+	 */
+	private int size;
+	/**
+	 * Per command: what it does.
+	 */
+	private byte[] ops = new byte[64];
+	/**
+	 * Per command: index into {@link #colors}.
+	 */
+	private int[] colorOf = new int[64];
+	/**
+	 * Per command: index into {@link #fonts}, or -1.
+	 */
+	private int[] fontOf = new int[64];
+	/**
+	 * Per command: index into {@link #objects} for strings and images, or -1.
+	 */
+	private int[] objectOf = new int[64];
+	/**
+	 * Per command: four numbers, e.g., x, y, width, height.
+	 */
+	private float[] coords = new float[64 * 4];
+	/**
+	 * Per command: its bounding box, for culling.
+	 */
+	private float[] bounds = new float[64 * 4];
+
+	/**
+	 * Where each layer starts, and whether it may be reordered.
+	 */
+	private int[] layerStart = new int[8];
+	private boolean[] layerCommutative = new boolean[8];
+	private int layers;
+
+	/**
+	 * The order to play commands back in.
+	 */
+	private long[] order = new long[64];
+	private boolean sorted;
+
+	private Color[] colors = new Color[16];
+	private int colorCount;
+	private final Map<Color, Integer> colorIndex = new HashMap<>();
+	private Font[] fonts = new Font[4];
+	private int fontCount;
+	private final Map<Font, Integer> fontIndex = new HashMap<>();
+	private Object[] objects = new Object[16];
+	private int objectCount;
+
+	private int currentColor;
+	private int currentFont = -1;
+
+	// Statistics about the last replay.
+	private int lastDrawn;
+	private int lastCulled;
+	private int lastStateChanges;
+
+	/**
+	 * Create an empty recording, that draws in white.
+	 */
+	public CommandBuffer() {
+		clear();
+	}
+
+	/**
+	 * Forget every command, to record a new picture.
+	 */
+	public void clear() {
+		size = 0;
+		layers = 0;
+		sorted = false;
+		colorCount = 0;
+		colorIndex.clear();
+		fontCount = 0;
+		fontIndex.clear();
+		Arrays.fill(objects, 0, objectCount, null);
+		objectCount = 0;
+		currentFont = -1;
+		setColor(Color.white);
+		beginLayer(false);
+	}
+
+	/**
+	 * @return true if nothing has been recorded.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return How many commands have been recorded.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Start a new layer: everything recorded from now on is drawn after
+	 * everything before. If the layer is commutative, its commands may be drawn in
+	 * any order, e.g., because they never overlap, or because they overlap but
+	 * are all the same color; this lets us group them by color and font.
+	 * 
+	 * @param commutative true if order within this layer does not matter.
+	 */
+	public void beginLayer(boolean commutative) {
+		if (layers > 0 && layerStart[layers - 1] == size) {
+			// The previous layer is empty; reuse it.
+			layerCommutative[layers - 1] = commutative;
+			return;
+		}
+		if (layers == layerStart.length) {
+			layerStart = Arrays.copyOf(layerStart, layers * 2);
+			layerCommutative = Arrays.copyOf(layerCommutative, layers * 2);
+		}
+		layerStart[layers] = size;
+		layerCommutative[layers] = commutative;
+		layers++;
+		sorted = false;
+	}
+
+	/**
+	 * Change the color for commands recorded after this.
+	 * 
+	 * @param color The color.
+	 */
+	public void setColor(Color color) {
+		Integer index = colorIndex.get(color);
+		if (index == null) {
+			if (colorCount == colors.length) {
+				colors = Arrays.copyOf(colors, colorCount * 2);
+			}
+			index = colorCount;
+			colors[colorCount++] = color;
+			colorIndex.put(color, index);
+		}
+		currentColor = index;
+	}
+
+	/**
+	 * Change the font for text recorded after this.
+	 * 
+	 * @param font The font.
+	 */
+	public void setFont(Font font) {
+		Integer index = fontIndex.get(font);
+		if (index == null) {
+			if (fontCount == fonts.length) {
+				fonts = Arrays.copyOf(fonts, fontCount * 2);
+			}
+			index = fontCount;
+			fonts[fontCount++] = font;
+			fontIndex.put(font, index);
+		}
+		currentFont = index;
+	}
+
+	/**
+	 * Record {@link Graphics2D#fillRect}.
+	 * 
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 */
+	public void fillRect(double x, double y, double w, double h) {
+		add(FILL_RECT, -1, x, y, w, h, x, y, w, h);
+	}
+
+	/**
+	 * Record {@link Graphics2D#drawRect}.
+	 * 
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 */
+	public void drawRect(double x, double y, double w, double h) {
+		add(DRAW_RECT, -1, x, y, w, h, x - 1, y - 1, w + 2, h + 2);
+	}
+
+	/**
+	 * Record {@link Graphics2D#fillOval}.
+	 * 
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 */
+	public void fillOval(double x, double y, double w, double h) {
+		add(FILL_OVAL, -1, x, y, w, h, x, y, w, h);
+	}
+
+	/**
+	 * Record {@link Graphics2D#drawOval}.
+	 * 
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 */
+	public void drawOval(double x, double y, double w, double h) {
+		add(DRAW_OVAL, -1, x, y, w, h, x - 1, y - 1, w + 2, h + 2);
+	}
+
+	/**
+	 * Record {@link Graphics2D#drawLine}.
+	 * 
+	 * @param x1 Where the line starts.
+	 * @param y1 Where the line starts.
+	 * @param x2 Where the line ends.
+	 * @param y2 Where the line ends.
+	 */
+	public void drawLine(double x1, double y1, double x2, double y2) {
+		add(DRAW_LINE, -1, x1, y1, x2, y2, Math.min(x1, x2) - 1, Math.min(y1, y2) - 1, Math.abs(x2 - x1) + 2,
+				Math.abs(y2 - y1) + 2);
+	}
+
+	/**
+	 * Record {@link Graphics2D#drawString(String, float, float)}, in the font
+	 * from {@link #setFont(Font)} (or {@link TextBox#PLAIN_FONT}).
+	 * 
+	 * @param text The text.
+	 * @param x    Where the left edge goes.
+	 * @param y    Where the baseline goes.
+	 */
+	public void drawString(String text, double x, double y) {
+		if (currentFont < 0) {
+			setFont(TextBox.PLAIN_FONT);
+		}
+		Rectangle2D r = TextBox.measureText(text, fonts[currentFont]);
+		add(DRAW_STRING, addObject(text), x, y, 0, 0, x + r.getX(), y + r.getY(), r.getWidth(), r.getHeight());
+	}
+
+	/**
+	 * Record {@link Graphics2D#drawImage(Image, int, int, int, int,
+	 * java.awt.image.ImageObserver)}.
+	 * 
+	 * @param image The image.
+	 * @param x     Where the left edge goes.
+	 * @param y     Where the top edge goes.
+	 * @param w     How wide to draw it.
+	 * @param h     How tall to draw it.
+	 */
+	public void drawImage(Image image, double x, double y, double w, double h) {
+		add(DRAW_IMAGE, addObject(image), x, y, w, h, x, y, w, h);
+	}
+
+	private int addObject(Object o) {
+		if (objectCount == objects.length) {
+			objects = Arrays.copyOf(objects, objectCount * 2);
+		}
+		objects[objectCount] = o;
+		return objectCount++;
+	}
+
+	private void add(int op, int object, double a, double b, double c, double d, double bx, double by, double bw,
+			double bh) {
+		if (size == ops.length) {
+			int n = size * 2;
+			ops = Arrays.copyOf(ops, n);
+			colorOf = Arrays.copyOf(colorOf, n);
+			fontOf = Arrays.copyOf(fontOf, n);
+			objectOf = Arrays.copyOf(objectOf, n);
+			coords = Arrays.copyOf(coords, n * 4);
+			bounds = Arrays.copyOf(bounds, n * 4);
+			order = Arrays.copyOf(order, n);
+		}
+		final int i = size++;
+		ops[i] = (byte) op;
+		colorOf[i] = currentColor;
+		fontOf[i] = op == DRAW_STRING ? currentFont : -1;
+		objectOf[i] = object;
+		coords[4 * i] = (float) a;
+		coords[4 * i + 1] = (float) b;
+		coords[4 * i + 2] = (float) c;
+		coords[4 * i + 3] = (float) d;
+		bounds[4 * i] = (float) bx;
+		bounds[4 * i + 1] = (float) by;
+		bounds[4 * i + 2] = (float) bw;
+		bounds[4 * i + 3] = (float) bh;
+		sorted = false;
+	}
+
+	/**
+	 * Work out the playback order: recording order, except that commands in a
+	 * commutative layer are grouped by font and color.
+	 */
+	private void sort() {
+		for (int layer = 0; layer < layers; layer++) {
+			final int from = layerStart[layer];
+			final int to = layer + 1 < layers ? layerStart[layer + 1] : size;
+			for (int i = from; i < to; i++) {
+				long key = 0;
+				if (layerCommutative[layer]) {
+					key = ((long) (fontOf[i] + 1) << 52) | ((long) colorOf[i] << 32);
+				}
+				order[i] = key | i;
+			}
+			if (layerCommutative[layer]) {
+				Arrays.sort(order, from, to);
+			}
+		}
+		sorted = true;
+	}
+
+	/**
+	 * Draw every command that is at least partly inside the viewport.
+	 * 
+	 * @param g        The graphics to draw to.
+	 * @param viewport What is visible, e.g., {@link GFX#windowAsRectangle()}, in
+	 *                 the same coordinates the commands were recorded in.
+	 */
+	public void replay(Graphics2D g, Rectangle2D viewport) {
+		replay(g, viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(), viewport.getMaxY());
+	}
+
+	/**
+	 * Draw every command that is at least partly inside the viewport.
+	 * 
+	 * @param g    The graphics to draw to.
+	 * @param minX The left edge of what is visible.
+	 * @param minY The top edge of what is visible.
+	 * @param maxX The right edge of what is visible.
+	 * @param maxY The bottom edge of what is visible.
+	 */
+	public void replay(Graphics2D g, double minX, double minY, double maxX, double maxY) {
+		if (!sorted) {
+			sort();
+		}
+		int drawn = 0;
+		int culled = 0;
+		int changes = 0;
+		int color = -1;
+		int font = -1;
+		for (int k = 0; k < size; k++) {
+			final int i = (int) order[k];
+			final int b = 4 * i;
+			if (bounds[b] > maxX || bounds[b + 1] > maxY || bounds[b] + bounds[b + 2] < minX
+					|| bounds[b + 1] + bounds[b + 3] < minY) {
+				culled++;
+				continue;
+			}
+			if (colorOf[i] != color) {
+				color = colorOf[i];
+				g.setColor(colors[color]);
+				changes++;
+			}
+			if (fontOf[i] >= 0 && fontOf[i] != font) {
+				font = fontOf[i];
+				g.setFont(fonts[font]);
+				changes++;
+			}
+			final int c = 4 * i;
+			switch (ops[i]) {
+			case FILL_RECT:
+				g.fillRect(Math.round(coords[c]), Math.round(coords[c + 1]), Math.round(coords[c + 2]),
+						Math.round(coords[c + 3]));
+				break;
+			case DRAW_RECT:
+				g.drawRect(Math.round(coords[c]), Math.round(coords[c + 1]), Math.round(coords[c + 2]),
+						Math.round(coords[c + 3]));
+				break;
+			case FILL_OVAL:
+				g.fillOval(Math.round(coords[c]), Math.round(coords[c + 1]), Math.round(coords[c + 2]),
+						Math.round(coords[c + 3]));
+				break;
+			case DRAW_OVAL:
+				g.drawOval(Math.round(coords[c]), Math.round(coords[c + 1]), Math.round(coords[c + 2]),
+						Math.round(coords[c + 3]));
+				break;
+			case DRAW_LINE:
+				g.drawLine(Math.round(coords[c]), Math.round(coords[c + 1]), Math.round(coords[c + 2]),
+						Math.round(coords[c + 3]));
+				break;
+			case DRAW_STRING:
+				g.drawString((String) objects[objectOf[i]], coords[c], coords[c + 1]);
+				break;
+			case DRAW_IMAGE:
+				g.drawImage((Image) objects[objectOf[i]], Math.round(coords[c]), Math.round(coords[c + 1]),
+						Math.round(coords[c + 2]), Math.round(coords[c + 3]), null);
+				break;
+			default:
+				throw new IllegalStateException("Unknown command: " + ops[i]);
+			}
+			drawn++;
+		}
+		lastDrawn = drawn;
+		lastCulled = culled;
+		lastStateChanges = changes;
+	}
+
+	/**
+	 * @return How many commands the last {@link #replay} drew.
+	 */
+	public int getLastDrawn() {
+		return lastDrawn;
+	}
+
+	/**
+	 * @return How many commands the last {@link #replay} skipped as off-screen.
+	 */
+	public int getLastCulled() {
+		return lastCulled;
+	}
+
+	/**
+	 * @return How many times the last {@link #replay} changed color or font.
+	 */
+	public int getLastStateChanges() {
+		return lastStateChanges;
+	}
+}
@@ -0,0 +1,216 @@
+package me.jjfoley.gfx;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of doubles, like a {@code List<Double>} but without wrapping
+ * each number in an object. Get one from {@link Util#makeDoubleList()}.
+ * 
+ * It is not thread-safe.
+ * 
+ * @author jfoley
+ * 
+ */
+public class DoubleList {
+	private double[] items;
+	private int size;
+
+	/**
+	 * Create an empty list.
+	 */
+	public DoubleList() {
+		this(16);
+	}
+
+	/**
+	 * Create an empty list with room for some items before it has to grow.
+	 * 
+	 * @param capacity How many items to make room for.
+	 */
+	public DoubleList(int capacity) {
+		this.items = new double[Math.max(1, capacity)];
+	}
+
+	/**
+	 * @return How many items are in the list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if there are no items.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Add an item to the end.
+	 * 
+	 * @param value The item.
+	 */
+	public void add(double value) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size * 2);
+		}
+		items[size++] = value;
+	}
+
+	/**
+	 * Add every item of another list to the end.
+	 * 
+	 * @param other The items to add.
+	 */
+	public void addAll(DoubleList other) {
+		ensureCapacity(size + other.size);
+		System.arraycopy(other.items, 0, items, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * @param index Which item, from 0.
+	 * @return The item.
+	 */
+	public double get(int index) {
+		checkIndex(index);
+		return items[index];
+	}
+
+	/**
+	 * Replace an item.
+	 * 
+	 * @param index Which item, from 0.
+	 * @param value The new item.
+	 * @return The old item.
+	 */
+	public double set(int index, double value) {
+		checkIndex(index);
+		double old = items[index];
+		items[index] = value;
+		return old;
+	}
+
+	/**
+	 * Remove an item, shifting the later ones down to keep the order.
+	 * 
+	 * @param index Which item, from 0.
+	 * @return The item removed.
+	 */
+	public double removeAt(int index) {
+		checkIndex(index);
+		double old = items[index];
+		System.arraycopy(items, index + 1, items, index, size - index - 1);
+		size--;
+		return old;
+	}
+
+	/**
+	 * Remove an item by moving the last item into its place. Faster than
+	 * {@link #removeAt} but does not keep the order.
+	 * 
+	 * @param index Which item, from 0.
+	 * @return The item removed.
+	 */
+	public double swapRemove(int index) {
+		checkIndex(index);
+		double old = items[index];
+		items[index] = items[--size];
+		return old;
+	}
+
+	/**
+	 * Remove the last item.
+	 * 
+	 * @return The item removed.
+	 */
+	public double removeLast() {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException("list is empty");
+		}
+		return items[--size];
+	}
+
+	/**
+	 * @param value An item to look for.
+	 * @return Where it first is, or -1 if it is not in the list.
+	 */
+	public int indexOf(double value) {
+		for (int i = 0; i < size; i++) {
+			if (items[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param value An item to look for.
+	 * @return true if it is in the list.
+	 */
+	public boolean contains(double value) {
+		return indexOf(value) >= 0;
+	}
+
+	/**
+	 * Remove every item, keeping the memory for reuse.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Sort the items from smallest to largest.
+	 */
+	public void sort() {
+		Arrays.sort(items, 0, size);
+	}
+
+	/**
+	 * Make sure the list can hold some number of items without growing.
+	 * 
+	 * @param capacity How many items.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > items.length) {
+			items = Arrays.copyOf(items, Math.max(capacity, items.length * 2));
+		}
+	}
+
+	/**
+	 * @return A copy of the items, as an array.
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(items, size);
+	}
+
+	/**
+	 * @return A copy of the items, as a regular Java list.
+	 */
+	public List<Double> toList() {
+		List<Double> out = Util.makeList();
+		for (int i = 0; i < size; i++) {
+			out.add(items[i]);
+		}
+		return out;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " of " + size);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(items[i]);
+		}
+		return sb.append(']').toString();
+	}
+}
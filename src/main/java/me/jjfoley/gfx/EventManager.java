@@ -1,8 +1,10 @@
 package me.jjfoley.gfx;
 
 import java.awt.event.*;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This is a non-public class that handles receiving all events from Java and
@@ -17,99 +19,308 @@ class EventManager implements WindowListener, KeyListener, MouseListener, MouseM
 	private final GFX app;
 
 	/**
-	 * The atomically referenced location of the most recent mouse click.
-	 * Can be cleared by the user or updated by a new event on different threads
-	 * safely.
+	 * How many clicks wait for {@link GFX#processClick()} before the oldest are
+	 * dropped.
 	 */
-	AtomicReference<IntPoint> lastClick = new AtomicReference<>();
+	static final int CLICK_CAPACITY = 64;
 	/**
-	 * The atomically referenced location of the mouse when it was last over the
-	 * window.
-	 * Can be cleared by the user or updated by a new event on different threads
-	 * safely.
+	 * The value of {@link #mousePosition} when the mouse is not over the window.
 	 */
-	AtomicReference<IntPoint> lastMousePosition = new AtomicReference<>();
+	static final long NO_MOUSE = Long.MIN_VALUE;
 	/**
-	 * The atomically-updated mapping from each keycode to their current state
-	 * up=true, down=false.
+	 * The location of the mouse when it was last over the window, packed into one
+	 * long by {@link IntPoint#pack(int, int)}, or {@link #NO_MOUSE}.
+	 * Can be cleared or updated by a new event on different threads safely.
+	 */
+	private final AtomicLong mousePosition = new AtomicLong(NO_MOUSE);
+	/**
+	 * The last {@link IntPoint} handed out for {@link #mousePosition}, so asking
+	 * again without the mouse moving does not create a new one.
+	 */
+	private volatile IntPoint mousePoint;
+	/**
+	 * Key codes below this are kept in {@link #keyBits}.
+	 */
+	private static final int KEY_BITS = 1 << 16;
+	/**
+	 * One bit per keycode: set while the key is down.
 	 * Can be read/updated from different threads.
 	 */
-	ConcurrentHashMap<Integer, Boolean> keyState = new ConcurrentHashMap<>();
+	private final AtomicLongArray keyBits = new AtomicLongArray(KEY_BITS / 64);
+	/**
+	 * Any rare keycodes too big for {@link #keyBits} that are down.
+	 */
+	private final Set<Integer> extendedKeys = ConcurrentHashMap.newKeySet();
+	/**
+	 * Every key and mouse event, in order, for {@link GFX#pollEvents}.
+	 */
+	final InputQueue queue = new InputQueue(InputQueue.DEFAULT_CAPACITY);
+	/**
+	 * Just the clicks (mouse releases), for {@link GFX#processClick()}; kept
+	 * apart so taking a click doesn't take events from {@link #queue}.
+	 */
+	final InputQueue clicks = new InputQueue(CLICK_CAPACITY);
+	/**
+	 * The modifier keys and buttons down as of the latest event, e.g.,
+	 * {@link InputEvent#SHIFT_DOWN_MASK}.
+	 */
+	private volatile int modifiers;
 
 	public EventManager(GFX app) {
 		this.app = app;
 	}
 
+	/**
+	 * @return The packed location of the mouse, or {@link #NO_MOUSE}.
+	 */
+	long getMousePacked() {
+		return mousePosition.get();
+	}
+
+	/**
+	 * @return The location of the mouse as a point, or null if it is not over the
+	 *         window.
+	 */
+	IntPoint getMousePoint() {
+		long packed = mousePosition.get();
+		if (packed == NO_MOUSE) {
+			return null;
+		}
+		int x = IntPoint.unpackX(packed);
+		int y = IntPoint.unpackY(packed);
+		IntPoint last = mousePoint;
+		if (last == null || last.x != x || last.y != y) {
+			last = new IntPoint(x, y);
+			mousePoint = last;
+		}
+		return last;
+	}
+
+	/**
+	 * @return The modifier keys and buttons down as of the latest event.
+	 */
+	int getModifiers() {
+		return modifiers;
+	}
+
+	/**
+	 * Handle a key event: from Java, or from an {@link InputReplay}.
+	 * 
+	 * @param type      Which kind of key event.
+	 * @param nanos     When it happened.
+	 * @param keyCode   The key, e.g., {@link KeyEvent#VK_SPACE}.
+	 * @param keyChar   The character typed, for {@link GFXEvent.Type#KEY_TYPED}.
+	 * @param modifiers The modifier keys and buttons down.
+	 */
+	void onKey(GFXEvent.Type type, long nanos, int keyCode, char keyChar, int modifiers) {
+		InputRecorder recorder = app.getInputRecorder();
+		if (recorder != null) {
+			recorder.recordKey(type, nanos, keyCode, keyChar, modifiers);
+		}
+		if (type == GFXEvent.Type.KEY_PRESSED) {
+			setKey(keyCode, true);
+		} else if (type == GFXEvent.Type.KEY_RELEASED) {
+			setKey(keyCode, false);
+		}
+		this.modifiers = modifiers;
+		queue.offer(type, nanos, 0, 0, keyCode, keyChar, 0, modifiers, 0);
+		app.requestRedraw();
+		// Typing the ESC key will let you quit no matter what.
+		if (type == GFXEvent.Type.KEY_TYPED && keyCode == KeyEvent.VK_ESCAPE) {
+			app.stop();
+		}
+	}
+
+	/**
+	 * Handle a mouse event: from Java, or from an {@link InputReplay}.
+	 * 
+	 * @param type       Which kind of mouse event.
+	 * @param nanos      When it happened.
+	 * @param x          Where the mouse was.
+	 * @param y          Where the mouse was.
+	 * @param button     Which button, for presses and releases.
+	 * @param modifiers  The modifier keys and buttons down.
+	 * @param clickCount How many clicks in a row.
+	 */
+	void onMouse(GFXEvent.Type type, long nanos, int x, int y, int button, int modifiers, int clickCount) {
+		InputRecorder recorder = app.getInputRecorder();
+		if (recorder != null) {
+			recorder.recordMouse(type, nanos, x, y, button, modifiers, clickCount);
+		}
+		switch (type) {
+		case MOUSE_RELEASED:
+			clicks.offer(type, nanos, x, y, 0, KeyEvent.CHAR_UNDEFINED, button, modifiers, clickCount);
+			break;
+		case MOUSE_EXITED:
+			mousePosition.set(NO_MOUSE);
+			break;
+		case MOUSE_MOVED:
+		case MOUSE_DRAGGED:
+			mousePosition.set(IntPoint.pack(x, y));
+			break;
+		default:
+			break;
+		}
+		this.modifiers = modifiers;
+		queue.offer(type, nanos, x, y, 0, KeyEvent.CHAR_UNDEFINED, button, modifiers, clickCount);
+		app.requestRedraw();
+	}
+
+	/**
+	 * Handle a window event: from Java, or from an {@link InputReplay}.
+	 * 
+	 * @param id Which kind of window event, e.g., {@link WindowEvent#WINDOW_CLOSED}.
+	 */
+	void onWindow(int id) {
+		InputRecorder recorder = app.getInputRecorder();
+		if (recorder != null) {
+			recorder.recordWindow(id);
+		}
+		switch (id) {
+		case WindowEvent.WINDOW_CLOSING:
+			// A window that exits on close calls System.exit right after this,
+			// before stop() ever runs, so save the recordings now.
+			app.stopRecording();
+			app.stopInputRecording();
+			break;
+		case WindowEvent.WINDOW_CLOSED:
+			// Closing the window will let you quit no matter what.
+			app.stop();
+			break;
+		case WindowEvent.WINDOW_DEICONIFIED:
+		case WindowEvent.WINDOW_ACTIVATED:
+			// The window needs to be drawn again when it comes back.
+			app.requestRedraw();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Pass a Java key event to {@link #onKey}.
+	 */
+	private void key(GFXEvent.Type type, KeyEvent e) {
+		onKey(type, System.nanoTime(), e.getKeyCode(), e.getKeyChar(), e.getModifiersEx());
+	}
+
+	/**
+	 * Pass a Java mouse event to {@link #onMouse}.
+	 */
+	private void mouse(GFXEvent.Type type, MouseEvent e) {
+		onMouse(type, System.nanoTime(), e.getX(), e.getY(), e.getButton(), e.getModifiersEx(), e.getClickCount());
+	}
+
+	/**
+	 * @param code A keycode.
+	 * @return true if the key is down.
+	 */
+	boolean isKeyDown(int code) {
+		if (code >= 0 && code < KEY_BITS) {
+			return (keyBits.get(code >>> 6) & (1L << code)) != 0;
+		}
+		return extendedKeys.contains(code);
+	}
+
+	/**
+	 * Mark a key as down or up.
+	 * 
+	 * @param code A keycode.
+	 * @param down true if it is down.
+	 * @return true if it was down before.
+	 */
+	boolean setKey(int code, boolean down) {
+		if (code < 0 || code >= KEY_BITS) {
+			return down ? !extendedKeys.add(code) : extendedKeys.remove(code);
+		}
+		final int word = code >>> 6;
+		final long bit = 1L << code;
+		while (true) {
+			long before = keyBits.get(word);
+			long after = down ? (before | bit) : (before & ~bit);
+			if (before == after || keyBits.compareAndSet(word, before, after)) {
+				return (before & bit) != 0;
+			}
+		}
+	}
+
 	/** Typing the ESC key will let you quit no matter what. */
 	@Override
 	public void keyTyped(KeyEvent e) {
-		if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-			app.stop();
-		}
+		key(GFXEvent.Type.KEY_TYPED, e);
 	}
 
 	/** Closing the window will let you quit no matter what. */
 	@Override
 	public void windowClosed(WindowEvent e) {
-		app.stop();
+		onWindow(e.getID());
 	}
 
 	/** Keep track of all the keys that are down. */
 	@Override
 	public void keyPressed(KeyEvent e) {
-		keyState.put(e.getKeyCode(), true);
+		key(GFXEvent.Type.KEY_PRESSED, e);
 	}
 
-	/** Take keys out of the map when they are not pressed. */
+	/** Clear the bit for keys when they are not pressed. */
 	@Override
 	public void keyReleased(KeyEvent e) {
-		keyState.remove(e.getKeyCode());
+		key(GFXEvent.Type.KEY_RELEASED, e);
 	}
 
 	/** Keep track of the location of the most recent click. */
 	@Override
 	public void mouseReleased(MouseEvent e) {
-		lastClick.set(new IntPoint(e));
+		mouse(GFXEvent.Type.MOUSE_RELEASED, e);
 	}
 
 	/** Clear the mouse position if it goes outside the window. */
 	@Override
 	public void mouseExited(MouseEvent e) {
-		lastMousePosition.set(null);
+		mouse(GFXEvent.Type.MOUSE_EXITED, e);
 	}
 
 	/** Keep track of the latest mouse position. */
 	@Override
 	public void mouseMoved(MouseEvent e) {
-		lastMousePosition.set(new IntPoint(e));
+		mouse(GFXEvent.Type.MOUSE_MOVED, e);
 	}
 
 	@Override
 	public void windowOpened(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
 	@Override
 	public void windowClosing(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
 	@Override
 	public void windowIconified(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
+	/** The window needs to be drawn again when it comes back. */
 	@Override
 	public void windowDeiconified(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
 	@Override
 	public void windowActivated(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
 	@Override
 	public void windowDeactivated(WindowEvent e) {
+		onWindow(e.getID());
 	}
 
+	/** Dragging moves the mouse too. */
 	@Override
 	public void mouseDragged(MouseEvent e) {
+		mouse(GFXEvent.Type.MOUSE_DRAGGED, e);
 	}
 
 	@Override
@@ -118,9 +329,11 @@ class EventManager implements WindowListener, KeyListener, MouseListener, MouseM
 
 	@Override
 	public void mousePressed(MouseEvent e) {
+		mouse(GFXEvent.Type.MOUSE_PRESSED, e);
 	}
 
 	@Override
 	public void mouseEntered(MouseEvent e) {
+		mouse(GFXEvent.Type.MOUSE_ENTERED, e);
 	}
 }
@@ -0,0 +1,247 @@
+package me.jjfoley.gfx;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class measures where the time in each frame goes. Every frame, the
+ * time spent in each {@link Phase} is added up and recorded into a
+ * {@link RollingHistogram}, so you can ask for the median, 99th percentile or
+ * worst case of recent frames.
+ * 
+ * Get it from {@link GFX#getMetrics()}, and turn on a built-in display of it
+ * with {@link GFX#setMetricsOverlay(boolean)}. Like {@link RollingHistogram},
+ * read it from the thread running frames, e.g., inside {@link GFX#draw}. With
+ * {@link GFX#setPipelined(boolean)}, drawing times are added to whichever frame
+ * update is working on when drawing finishes.
+ * 
+ * @author jfoley
+ *
+ */
+public class FrameMetrics {
+	/**
+	 * The parts of a frame we measure.
+	 */
+	public enum Phase {
+		/**
+		 * Time inside {@link GFX#update}.
+		 */
+		UPDATE,
+		/**
+		 * Time spent clearing the screen.
+		 */
+		CLEAR,
+		/**
+		 * Time inside {@link GFX#draw}.
+		 */
+		DRAW,
+		/**
+		 * Time spent putting the finished frame on the screen.
+		 */
+		PRESENT,
+		/**
+		 * Time spent waiting for the next frame.
+		 */
+		IDLE,
+		/**
+		 * Time from the start of one frame to the start of the next.
+		 */
+		FRAME,
+	}
+
+	/**
+	 * How many frames the histograms remember by default.
+	 */
+	public static final int DEFAULT_WINDOW = 240;
+
+	/**
+	 * How often (in frames) the overlay text is refreshed.
+	 */
+	private static final int OVERLAY_REFRESH = 15;
+	private static final int OVERLAY_LINE_HEIGHT = 14;
+	private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+	private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private final RollingHistogram[] histograms = new RollingHistogram[PHASES.length];
+	/**
+	 * Held while recording into {@link #histograms} and while the overlay reads
+	 * them, since a pipelined app draws the overlay on another thread.
+	 */
+	private final Object histogramLock = new Object();
+	/**
+	 * Time added up so far in the current frame, per phase. Atomic, because a
+	 * pipelined app adds to it from two threads.
+	 */
+	private final AtomicLongArray current = new AtomicLongArray(PHASES.length);
+	/**
+	 * When the current frame started, or zero before the first one.
+	 */
+	private long frameStart;
+	/**
+	 * The time the previous frame spent working (everything but
+	 * {@link Phase#IDLE}).
+	 */
+	private volatile long lastBusy;
+	/**
+	 * The time the previous frame spent in {@link Phase#CLEAR} and
+	 * {@link Phase#DRAW}: the part a lower resolution or quality can speed up,
+	 * for a {@link QualityController} or {@link RenderScaleController}.
+	 */
+	private volatile long lastDraw;
+
+	private final TextBox[] overlayLines = new TextBox[PHASES.length + 1];
+	private int framesSinceOverlay = OVERLAY_REFRESH;
+
+	/**
+	 * Create metrics that remember {@link #DEFAULT_WINDOW} frames.
+	 */
+	public FrameMetrics() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Create metrics that remember a given number of frames.
+	 * 
+	 * @param window How many frames to remember.
+	 */
+	public FrameMetrics(int window) {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new RollingHistogram(window);
+		}
+	}
+
+	/**
+	 * Get the recent timings of one phase.
+	 * 
+	 * @param phase Which part of the frame.
+	 * @return The nanoseconds spent per frame in that phase.
+	 */
+	public RollingHistogram get(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * @return How many frames per second we actually got recently.
+	 */
+	public double getEffectiveFps() {
+		double mean = get(Phase.FRAME).mean();
+		return mean > 0 ? 1e9 / mean : 0;
+	}
+
+	/**
+	 * Forget all the timings.
+	 */
+	public void clear() {
+		synchronized (histogramLock) {
+			for (RollingHistogram h : histograms) {
+				h.clear();
+			}
+		}
+		for (int i = 0; i < current.length(); i++) {
+			current.set(i, 0);
+		}
+		frameStart = 0;
+		lastBusy = 0;
+		lastDraw = 0;
+	}
+
+	/**
+	 * @return How long the previous frame spent working, not waiting, in
+	 *         nanoseconds.
+	 */
+	public long getLastBusyNanos() {
+		return lastBusy;
+	}
+
+	/**
+	 * @return How long the previous frame spent clearing and drawing, in
+	 *         nanoseconds; zero if it wasn't drawn.
+	 */
+	public long getLastDrawNanos() {
+		return lastDraw;
+	}
+
+	/**
+	 * A new frame is starting: record the previous one.
+	 * 
+	 * @param now The current {@link System#nanoTime()}.
+	 */
+	void beginFrame(long now) {
+		if (frameStart != 0) {
+			current.set(Phase.FRAME.ordinal(), now - frameStart);
+			long busy = 0;
+			long draw = 0;
+			synchronized (histogramLock) {
+				for (int i = 0; i < current.length(); i++) {
+					final long nanos = current.getAndSet(i, 0);
+					histograms[i].record(nanos);
+					if (PHASES[i] != Phase.IDLE && PHASES[i] != Phase.FRAME) {
+						busy += nanos;
+					}
+					if (PHASES[i] == Phase.CLEAR || PHASES[i] == Phase.DRAW) {
+						draw += nanos;
+					}
+				}
+			}
+			lastBusy = busy;
+			lastDraw = draw;
+		}
+		frameStart = now;
+	}
+
+	/**
+	 * Add time to a phase of the current frame.
+	 * 
+	 * @param phase Which part of the frame.
+	 * @param nanos How long it took.
+	 */
+	void add(Phase phase, long nanos) {
+		current.addAndGet(phase.ordinal(), nanos);
+	}
+
+	/**
+	 * Draw a summary of these metrics in the top-left corner.
+	 * 
+	 * @param g The graphics to draw to.
+	 */
+	void drawOverlay(Graphics2D g) {
+		if (++framesSinceOverlay >= OVERLAY_REFRESH) {
+			framesSinceOverlay = 0;
+			// Read every histogram at the same frame, not half way through one.
+			synchronized (histogramLock) {
+				setOverlayLine(0, String.format("%6.1f fps", getEffectiveFps()));
+				for (Phase p : PHASES) {
+					RollingHistogram h = get(p);
+					setOverlayLine(p.ordinal() + 1, String.format("%-7s p50 %6.2f p99 %6.2f max %6.2f ms",
+							p.name().toLowerCase(), h.p50() / 1e6, h.p99() / 1e6, h.max() / 1e6));
+				}
+			}
+		}
+
+		double width = 0;
+		for (TextBox line : overlayLines) {
+			width = Math.max(width, line.getBoundingBox().getWidth());
+		}
+		g.setColor(OVERLAY_BACKGROUND);
+		g.fillRect(0, 0, (int) Math.ceil(width) + 8, overlayLines.length * OVERLAY_LINE_HEIGHT + 8);
+		for (TextBox line : overlayLines) {
+			line.draw(g);
+		}
+	}
+
+	/**
+	 * Change one line of the overlay, creating it the first time.
+	 */
+	private void setOverlayLine(int i, String text) {
+		TextBox line = overlayLines[i];
+		if (line == null) {
+			overlayLines[i] = new TextBox(4, 4 + i * OVERLAY_LINE_HEIGHT, text, OVERLAY_FONT, Color.white);
+		} else {
+			line.setString(text);
+		}
+	}
+}
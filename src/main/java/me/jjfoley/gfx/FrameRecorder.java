@@ -0,0 +1,517 @@
+package me.jjfoley.gfx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * This class records the frames an application draws, as a folder of PNG
+ * images or as one animated GIF. Saving images is slow, so drawing only copies
+ * each frame into a buffer and puts it in a queue; background threads do the
+ * saving.
+ * 
+ * <pre>
+ * {@code
+app.startRecording(new FrameRecorder(new File("recording.gif"), FrameRecorder.Format.GIF));
+...
+FrameRecorder done = app.stopRecording();
+System.out.println(done.getEncodedFrames() + " frames saved");
+}
+ * </pre>
+ * 
+ * If the encoders fall behind, the queue fills up, and what happens next is
+ * chosen by {@link #setBackpressure(Backpressure)}.
+ * 
+ * @author jfoley
+ * 
+ */
+public class FrameRecorder {
+	/**
+	 * What kind of files to write.
+	 */
+	public enum Format {
+		/**
+		 * A folder of numbered PNG files: frame-000000.png, frame-000001.png, ...
+		 */
+		PNG_SEQUENCE,
+		/**
+		 * One animated GIF file that loops forever.
+		 */
+		GIF,
+	}
+
+	/**
+	 * What to do with a new frame when the queue is full.
+	 */
+	public enum Backpressure {
+		/**
+		 * Skip the frame; the live frame rate is never slowed down.
+		 */
+		DROP,
+		/**
+		 * Wait for room; every frame is saved, but drawing slows down to the speed
+		 * of the encoders.
+		 */
+		BLOCK,
+		/**
+		 * Capture fewer frames while the queue is backed up: every 2nd, then every
+		 * 4th, up to every 8th, going back to every frame once it drains. Frames
+		 * are still dropped if it fills anyway.
+		 */
+		DOWNSAMPLE,
+	}
+
+	/**
+	 * How many frames can wait to be saved, by default.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+	/**
+	 * The most {@link Backpressure#DOWNSAMPLE} will stretch the capture interval.
+	 */
+	private static final int MAX_DOWNSAMPLE = 8;
+
+	/**
+	 * One captured frame, in a buffer we reuse.
+	 */
+	private static final class Frame {
+		final int[] pixels;
+		long index;
+		long nanos;
+
+		Frame(int size) {
+			this.pixels = new int[size];
+		}
+	}
+
+	/**
+	 * Put in the queue to tell an encoder to finish.
+	 */
+	private static final Frame STOP = new Frame(0);
+
+	private final File output;
+	private final Format format;
+	private Backpressure backpressure = Backpressure.DROP;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int encoderThreads = 2;
+	private int captureEvery = 1;
+
+	// Set up by start():
+	private int width;
+	private int height;
+	private BufferedImage canvas;
+	private int[] canvasPixels;
+	private BlockingQueue<Frame> free;
+	private BlockingQueue<Frame> work;
+	private Thread[] encoders;
+	private volatile boolean started;
+	private volatile boolean finished;
+
+	// Only touched by the thread drawing frames:
+	private long framesSeen;
+	private int downsample = 1;
+
+	// Only touched by the GIF encoder:
+	private ImageOutputStream gifStream;
+	private ImageWriter gifWriter;
+	private long gifPreviousNanos;
+
+	private final AtomicLong captured = new AtomicLong();
+	private final AtomicLong encoded = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong blockedNanos = new AtomicLong();
+	private final AtomicLong encodeNanos = new AtomicLong();
+	private volatile long startNanos;
+	private volatile long stopNanos;
+	private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+	/**
+	 * Create a recorder; start it with {@link GFX#startRecording(FrameRecorder)}.
+	 * 
+	 * @param output Where to save: a folder for {@link Format#PNG_SEQUENCE}
+	 *               (created if needed), or a file for {@link Format#GIF}.
+	 * @param format What kind of files to write.
+	 */
+	public FrameRecorder(File output, Format format) {
+		this.output = output;
+		this.format = format;
+	}
+
+	/**
+	 * @param backpressure What to do when the encoders fall behind; default
+	 *                     {@link Backpressure#DROP}.
+	 */
+	public void setBackpressure(Backpressure backpressure) {
+		checkNotStarted();
+		this.backpressure = backpressure;
+	}
+
+	/**
+	 * @param capacity How many frames can wait to be saved. Each costs 4 bytes
+	 *                 per pixel of memory.
+	 */
+	public void setQueueCapacity(int capacity) {
+		checkNotStarted();
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+		}
+		this.queueCapacity = capacity;
+	}
+
+	/**
+	 * @param threads How many threads save PNG files at once; default 2. GIFs are
+	 *                always saved by one thread, since frames go in order.
+	 */
+	public void setEncoderThreads(int threads) {
+		checkNotStarted();
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1: " + threads);
+		}
+		this.encoderThreads = threads;
+	}
+
+	/**
+	 * @param n Only record every nth frame; default 1 (every frame).
+	 */
+	public void setCaptureEvery(int n) {
+		checkNotStarted();
+		if (n < 1) {
+			throw new IllegalArgumentException("n must be at least 1: " + n);
+		}
+		this.captureEvery = n;
+	}
+
+	private void checkNotStarted() {
+		if (started) {
+			throw new IllegalStateException("This recorder has already started.");
+		}
+	}
+
+	/**
+	 * Get ready to record frames of a given size, and start the encoders.
+	 * 
+	 * @param width  The width of each frame.
+	 * @param height The height of each frame.
+	 */
+	synchronized void start(int width, int height) {
+		checkNotStarted();
+		try {
+			if (format == Format.PNG_SEQUENCE) {
+				if (!output.isDirectory() && !output.mkdirs()) {
+					throw new IOException("Couldn't create folder: " + output);
+				}
+			} else {
+				openGif();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		this.width = width;
+		this.height = height;
+		this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.canvasPixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+		final int threads = format == Format.GIF ? 1 : encoderThreads;
+		// One buffer per queue slot plus one per encoder, so a free buffer always
+		// means there is room in the queue.
+		this.free = new ArrayBlockingQueue<>(queueCapacity + threads);
+		// Room for the STOP markers too.
+		this.work = new ArrayBlockingQueue<>(queueCapacity + 2 * threads);
+		for (int i = 0; i < queueCapacity + threads; i++) {
+			free.add(new Frame(width * height));
+		}
+		this.startNanos = System.nanoTime();
+		this.encoders = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(this::encodeLoop, "GFX-recorder-" + i);
+			t.setDaemon(true);
+			// Saving should not compete with drawing.
+			t.setPriority(Thread.NORM_PRIORITY - 1);
+			encoders[i] = t;
+			t.start();
+		}
+		started = true;
+	}
+
+	/**
+	 * @return The image frames should be drawn into while recording; see
+	 *         {@link #capture()}.
+	 */
+	BufferedImage getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * Called after each frame is drawn into {@link #getCanvas()}: copy it into a
+	 * buffer for the encoders, if we want it.
+	 */
+	void capture() {
+		if (finished) {
+			return;
+		}
+		final long now = System.nanoTime();
+		final long seen = framesSeen++;
+		if (seen % ((long) captureEvery * downsample) != 0) {
+			return;
+		}
+
+		if (backpressure == Backpressure.DOWNSAMPLE) {
+			int depth = work.size();
+			if (depth > queueCapacity / 2 && downsample < MAX_DOWNSAMPLE) {
+				downsample *= 2;
+			} else if (depth < queueCapacity / 4 && downsample > 1) {
+				downsample /= 2;
+			}
+		}
+
+		Frame f = free.poll();
+		if (f == null && backpressure == Backpressure.BLOCK) {
+			try {
+				f = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			blockedNanos.addAndGet(System.nanoTime() - now);
+		}
+		if (f == null) {
+			dropped.incrementAndGet();
+			return;
+		}
+		System.arraycopy(canvasPixels, 0, f.pixels, 0, canvasPixels.length);
+		f.index = captured.getAndIncrement();
+		f.nanos = now;
+		work.add(f);
+	}
+
+	/**
+	 * Stop recording: save everything still in the queue and close the files.
+	 * 
+	 * @throws UncheckedIOException if any frame could not be saved.
+	 */
+	synchronized void finish() {
+		if (!started || finished) {
+			return;
+		}
+		finished = true;
+		for (int i = 0; i < encoders.length; i++) {
+			work.add(STOP);
+		}
+		boolean interrupted = false;
+		for (Thread t : encoders) {
+			while (t.isAlive()) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (format == Format.GIF) {
+			closeGif();
+		}
+		stopNanos = System.nanoTime();
+		IOException e = failure.get();
+		if (e != null) {
+			throw new UncheckedIOException("Couldn't save recording: " + output, e);
+		}
+	}
+
+	/**
+	 * The body of each encoder thread.
+	 */
+	private void encodeLoop() {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		while (true) {
+			Frame f;
+			try {
+				f = work.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (f == STOP) {
+				return;
+			}
+			final long start = System.nanoTime();
+			System.arraycopy(f.pixels, 0, pixels, 0, pixels.length);
+			final long index = f.index;
+			final long nanos = f.nanos;
+			free.add(f);
+			if (failure.get() != null) {
+				continue;
+			}
+			try {
+				if (format == Format.GIF) {
+					writeGifFrame(image, nanos);
+				} else {
+					ImageIO.write(image, "png", new File(output, String.format("frame-%06d.png", index)));
+				}
+				encoded.incrementAndGet();
+			} catch (IOException e) {
+				failure.compareAndSet(null, e);
+			}
+			encodeNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	private void openGif() throws IOException {
+		gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+		if (output.exists() && !output.delete()) {
+			throw new IOException("Couldn't replace file: " + output);
+		}
+		gifStream = ImageIO.createImageOutputStream(output);
+		if (gifStream == null) {
+			throw new IOException("Couldn't create file: " + output);
+		}
+		gifWriter.setOutput(gifStream);
+		gifWriter.prepareWriteSequence(null);
+	}
+
+	private void writeGifFrame(BufferedImage image, long nanos) throws IOException {
+		// GIF delays are in 1/100 of a second: how long since the previous frame.
+		final boolean first = gifPreviousNanos == 0;
+		long elapsed = first ? 1_000_000_000L / GFX.FPS : nanos - gifPreviousNanos;
+		gifPreviousNanos = nanos;
+		int delay = (int) Math.max(1, Math.min(65535, Math.round(elapsed / 1e7)));
+
+		ImageWriteParam param = gifWriter.getDefaultWriteParam();
+		IIOMetadata meta = gifWriter.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+		String formatName = meta.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(formatName);
+
+		IIOMetadataNode control = child(root, "GraphicControlExtension");
+		control.setAttribute("disposalMethod", "none");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("delayTime", Integer.toString(delay));
+		control.setAttribute("transparentColorIndex", "0");
+
+		if (first) {
+			// Loop forever.
+			IIOMetadataNode app = new IIOMetadataNode("ApplicationExtension");
+			app.setAttribute("applicationID", "NETSCAPE");
+			app.setAttribute("authenticationCode", "2.0");
+			app.setUserObject(new byte[] { 1, 0, 0 });
+			child(root, "ApplicationExtensions").appendChild(app);
+		}
+		meta.setFromTree(formatName, root);
+		gifWriter.writeToSequence(new IIOImage(image, null, meta), param);
+	}
+
+	private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+		for (int i = 0; i < root.getLength(); i++) {
+			if (root.item(i).getNodeName().equals(name)) {
+				return (IIOMetadataNode) root.item(i);
+			}
+		}
+		IIOMetadataNode node = new IIOMetadataNode(name);
+		root.appendChild(node);
+		return node;
+	}
+
+	private void closeGif() {
+		try {
+			gifWriter.endWriteSequence();
+			gifStream.close();
+		} catch (IOException e) {
+			failure.compareAndSet(null, e);
+		} finally {
+			gifWriter.dispose();
+		}
+	}
+
+	/**
+	 * @return Where the recording is saved.
+	 */
+	public File getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return true once the recorder is started and until it is finished.
+	 */
+	public boolean isRecording() {
+		return started && !finished;
+	}
+
+	/**
+	 * @return How many frames were copied into the queue.
+	 */
+	public long getCapturedFrames() {
+		return captured.get();
+	}
+
+	/**
+	 * @return How many frames have been saved so far.
+	 */
+	public long getEncodedFrames() {
+		return encoded.get();
+	}
+
+	/**
+	 * @return How many frames were skipped because the queue was full.
+	 */
+	public long getDroppedFrames() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return How many frames are waiting to be saved right now.
+	 */
+	public int getQueueDepth() {
+		BlockingQueue<Frame> q = work;
+		return q == null ? 0 : q.size();
+	}
+
+	/**
+	 * @return How many frames are recorded out of each one drawn right now: 1
+	 *         normally, more while {@link Backpressure#DOWNSAMPLE} is catching up.
+	 */
+	public int getCaptureInterval() {
+		return captureEvery * downsample;
+	}
+
+	/**
+	 * @return Total time drawing waited for room under
+	 *         {@link Backpressure#BLOCK}, in nanoseconds.
+	 */
+	public long getBlockedNanos() {
+		return blockedNanos.get();
+	}
+
+	/**
+	 * @return Frames saved per second since recording started.
+	 */
+	public double getEncodeFps() {
+		long end = finished ? stopNanos : System.nanoTime();
+		long elapsed = end - startNanos;
+		return started && elapsed > 0 ? encoded.get() * 1e9 / elapsed : 0;
+	}
+
+	/**
+	 * @return The average time to save one frame, in milliseconds, counting each
+	 *         encoder thread separately.
+	 */
+	public double getMeanEncodeMillis() {
+		long n = encoded.get();
+		return n > 0 ? encodeNanos.get() / 1e6 / n : 0;
+	}
+}
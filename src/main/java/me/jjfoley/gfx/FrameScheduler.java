@@ -0,0 +1,482 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class decides when each frame of a {@link GFX} application happens, and
+ * how many times {@link GFX#update} is called for it.
+ *
+ * Frames are scheduled against deadlines, rather than by sleeping a fixed
+ * amount after the work is done, so the time spent in {@link GFX#update} and
+ * {@link GFX#draw} does not slow the frame rate down. Waiting is done with
+ * {@link LockSupport#parkNanos} and the last little bit is spent yielding, so
+ * we wake up close to on time.
+ *
+ * You can hand a configured scheduler to {@link GFX#setScheduler}, or tweak
+ * the one from {@link GFX#getScheduler()} before calling {@link GFX#start()}.
+ *
+ * @author jfoley
+ *
+ */
+public class FrameScheduler {
+	/**
+	 * How should {@link GFX#update} be called?
+	 */
+	public enum Mode {
+		/**
+		 * Call update once per frame with the real time that has passed.
+		 */
+		VARIABLE,
+		/**
+		 * Call update with a fixed step ({@link FrameScheduler#getUpdateRate()}),
+		 * as many times as needed to catch up to real time. The left-over fraction
+		 * of a step is available as {@link FrameScheduler#getAlpha()}.
+		 */
+		FIXED,
+	}
+
+	/**
+	 * What should happen to drawing when we fall behind schedule?
+	 */
+	public enum FrameSkip {
+		/**
+		 * Always draw every frame. If a frame runs long, the schedule restarts from
+		 * when it finished, and the missed deadlines are counted as dropped.
+		 */
+		NONE,
+		/**
+		 * If we are more than a whole frame behind, skip drawing (but not updating)
+		 * to catch up, at most {@link FrameScheduler#getMaxFrameSkip()} frames in a
+		 * row.
+		 */
+		SKIP_DRAW,
+	}
+
+	private volatile Mode mode = Mode.VARIABLE;
+	private volatile FrameSkip frameSkip = FrameSkip.NONE;
+	/**
+	 * Zero means "use {@link GFX#FPS}".
+	 */
+	private volatile double targetFps = 0;
+	/**
+	 * Zero means "use the target FPS".
+	 */
+	private volatile double updateRate = 0;
+	private volatile int maxCatchUpSteps = 5;
+	private volatile int maxFrameSkip = 5;
+	private volatile long spinNanos = 1_000_000L;
+
+	// State of the schedule; only touched by the thread running frames.
+	private long deadline;
+	private long lastUpdate;
+	private long accumulator;
+	private int skippedInARow;
+	/**
+	 * Set when update asked for a redraw, so update runs again next frame even
+	 * when rendering on demand.
+	 */
+	private boolean changedLastFrame;
+	/**
+	 * Volatile because a pipelined app draws on another thread.
+	 */
+	private volatile double alpha = 1.0;
+
+	// Statistics; written by the thread running frames, readable anywhere.
+	private volatile long frames;
+	private volatile long lateFrames;
+	private volatile long droppedFrames;
+	private volatile long droppedUpdates;
+	private volatile long skippedFrames;
+
+	/**
+	 * Create a scheduler with the default settings: {@link Mode#VARIABLE},
+	 * {@link FrameSkip#NONE} at {@link GFX#FPS}.
+	 */
+	public FrameScheduler() {
+	}
+
+	/**
+	 * Create a scheduler with a particular mode.
+	 *
+	 * @param mode      How to call update.
+	 * @param targetFps How many frames per second to aim for.
+	 */
+	public FrameScheduler(Mode mode, double targetFps) {
+		setMode(mode);
+		setTargetFps(targetFps);
+	}
+
+	/**
+	 * @return How we call update.
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @param mode How to call update, see {@link Mode}.
+	 */
+	public void setMode(Mode mode) {
+		if (mode == null) {
+			throw new IllegalArgumentException("mode cannot be null");
+		}
+		this.mode = mode;
+	}
+
+	/**
+	 * @return What we do when we fall behind.
+	 */
+	public FrameSkip getFrameSkip() {
+		return frameSkip;
+	}
+
+	/**
+	 * @param frameSkip What to do when we fall behind, see {@link FrameSkip}.
+	 */
+	public void setFrameSkip(FrameSkip frameSkip) {
+		if (frameSkip == null) {
+			throw new IllegalArgumentException("frameSkip cannot be null");
+		}
+		this.frameSkip = frameSkip;
+	}
+
+	/**
+	 * @return The frames per second we are aiming for.
+	 */
+	public double getTargetFps() {
+		double fps = targetFps;
+		return fps > 0 ? fps : GFX.FPS;
+	}
+
+	/**
+	 * @param fps The frames per second to aim for, or zero to follow
+	 *            {@link GFX#FPS}.
+	 */
+	public void setTargetFps(double fps) {
+		if (fps < 0) {
+			throw new IllegalArgumentException("fps must not be negative: " + fps);
+		}
+		this.targetFps = fps;
+	}
+
+	/**
+	 * @return How many fixed updates per second happen in {@link Mode#FIXED}.
+	 */
+	public double getUpdateRate() {
+		double rate = updateRate;
+		return rate > 0 ? rate : getTargetFps();
+	}
+
+	/**
+	 * @param rate How many fixed updates per second happen in {@link Mode#FIXED},
+	 *             or zero to match the target FPS.
+	 */
+	public void setUpdateRate(double rate) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("rate must not be negative: " + rate);
+		}
+		this.updateRate = rate;
+	}
+
+	/**
+	 * @return The most fixed updates we will run in one frame.
+	 */
+	public int getMaxCatchUpSteps() {
+		return maxCatchUpSteps;
+	}
+
+	/**
+	 * Limit the number of fixed updates per frame, so a slow update cannot make us
+	 * fall further and further behind. Time beyond this is thrown away and counted
+	 * in {@link #getDroppedUpdates()}.
+	 *
+	 * @param steps At least one.
+	 */
+	public void setMaxCatchUpSteps(int steps) {
+		if (steps < 1) {
+			throw new IllegalArgumentException("steps must be at least 1: " + steps);
+		}
+		this.maxCatchUpSteps = steps;
+	}
+
+	/**
+	 * @return The most draws we will skip in a row with
+	 *         {@link FrameSkip#SKIP_DRAW}.
+	 */
+	public int getMaxFrameSkip() {
+		return maxFrameSkip;
+	}
+
+	/**
+	 * @param frames The most draws to skip in a row, at least one.
+	 */
+	public void setMaxFrameSkip(int frames) {
+		if (frames < 1) {
+			throw new IllegalArgumentException("frames must be at least 1: " + frames);
+		}
+		this.maxFrameSkip = frames;
+	}
+
+	/**
+	 * @return How close to a deadline we stop parking and start yielding.
+	 */
+	public long getSpinNanos() {
+		return spinNanos;
+	}
+
+	/**
+	 * Parking may oversleep by a millisecond or so, depending on the operating
+	 * system. The last stretch before a deadline is spent yielding instead.
+	 *
+	 * @param nanos How long before a deadline to stop parking.
+	 */
+	public void setSpinNanos(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("nanos must not be negative: " + nanos);
+		}
+		this.spinNanos = nanos;
+	}
+
+	/**
+	 * In {@link Mode#FIXED}, how far between the last update and the next one we
+	 * are, so that drawing can blend between them. In {@link Mode#VARIABLE} this
+	 * is always 1.
+	 *
+	 * @return A number from 0 to 1.
+	 */
+	public double getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * @return How many frames have been run.
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * @return How many frames took longer than their time slot.
+	 */
+	public long getLateFrames() {
+		return lateFrames;
+	}
+
+	/**
+	 * @return How many frames were never drawn because we were behind.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return How many fixed updates were thrown away by
+	 *         {@link #setMaxCatchUpSteps}.
+	 */
+	public long getDroppedUpdates() {
+		return droppedUpdates;
+	}
+
+	/**
+	 * With {@link GFX#setRenderOnDemand(boolean)}, how many frames were not
+	 * drawn because nothing changed (including the time spent asleep).
+	 * 
+	 * @return How many frames were saved.
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
+	/**
+	 * Forget the statistics collected so far.
+	 */
+	public void resetStats() {
+		frames = 0;
+		lateFrames = 0;
+		droppedFrames = 0;
+		droppedUpdates = 0;
+		skippedFrames = 0;
+	}
+
+	/**
+	 * @return The length of one frame, in nanoseconds.
+	 */
+	long frameNanos() {
+		return Math.max(1L, (long) (1e9 / getTargetFps()));
+	}
+
+	/**
+	 * Restart the schedule, e.g., when the loop starts.
+	 *
+	 * @param now The current {@link System#nanoTime()}.
+	 */
+	void begin(long now) {
+		deadline = now;
+		lastUpdate = now;
+		accumulator = 0;
+		skippedInARow = 0;
+		changedLastFrame = false;
+		alpha = 1.0;
+	}
+
+	/**
+	 * Restart the schedule after sleeping, as if the last update was one frame
+	 * ago, so the next update does not get the whole time asleep as its dt.
+	 * 
+	 * @param now The current {@link System#nanoTime()}.
+	 */
+	void resume(long now) {
+		long period = frameNanos();
+		deadline = now;
+		lastUpdate = now - period;
+		accumulator = mode == Mode.FIXED ? Math.max(0, (long) (1e9 / getUpdateRate()) - period) : 0;
+		skippedInARow = 0;
+	}
+
+	/**
+	 * @param app The application.
+	 * @return true if it only draws on demand and nothing has asked for a frame,
+	 *         so it can sleep until {@link GFX#requestRedraw()}.
+	 */
+	boolean isIdle(GFX app) {
+		return app.isRenderOnDemand() && !app.isRedrawRequested() && !changedLastFrame;
+	}
+
+	/**
+	 * Account for time spent asleep because of {@link #isIdle(GFX)}, and restart
+	 * the schedule.
+	 * 
+	 * @param app    The application.
+	 * @param asleep When it went to sleep.
+	 * @param awake  When it woke up.
+	 */
+	void wake(GFX app, long asleep, long awake) {
+		app.getMetrics().add(FrameMetrics.Phase.IDLE, awake - asleep);
+		skippedFrames += (awake - asleep) / frameNanos();
+		resume(awake);
+	}
+
+	/**
+	 * Run the frame that is due now: update one or more times, then draw (unless
+	 * we are skipping).
+	 *
+	 * @param app The application.
+	 * @return The {@link System#nanoTime()} at which the next frame is due.
+	 */
+	long frame(GFX app) {
+		final long period = frameNanos();
+		final long start = System.nanoTime();
+		app.getMetrics().beginFrame(start);
+		app.deliverAsync();
+		final long elapsed = start - lastUpdate;
+		lastUpdate = start;
+		final boolean onDemand = app.isRenderOnDemand();
+		final boolean wanted = onDemand && app.takeRedrawRequest();
+
+		if (mode == Mode.FIXED) {
+			final long step = Math.max(1L, (long) (1e9 / getUpdateRate()));
+			final int maxSteps = maxCatchUpSteps;
+			accumulator += elapsed;
+			int steps = 0;
+			while (accumulator >= step && steps < maxSteps) {
+				app.stepUpdate(step / 1e9);
+				accumulator -= step;
+				steps++;
+			}
+			if (accumulator >= step) {
+				droppedUpdates += accumulator / step;
+				accumulator %= step;
+			}
+			alpha = accumulator / (double) step;
+		} else {
+			app.stepUpdate(elapsed / 1e9);
+			alpha = 1.0;
+		}
+
+		boolean skip = frameSkip == FrameSkip.SKIP_DRAW && start - deadline > period
+				&& skippedInARow < maxFrameSkip;
+		changedLastFrame = onDemand && app.takeRedrawRequest();
+		if (onDemand && !wanted && !changedLastFrame) {
+			skippedFrames++;
+		} else if (skip) {
+			skippedInARow++;
+			droppedFrames++;
+		} else {
+			skippedInARow = 0;
+			app.renderFrame();
+		}
+		frames++;
+
+		deadline += period;
+		final long end = System.nanoTime();
+		final long behind = end - deadline;
+		if (behind > 0) {
+			lateFrames++;
+			if (frameSkip == FrameSkip.NONE) {
+				// Start over from here; whole slots we ran past are lost.
+				droppedFrames += behind / period;
+				deadline = end;
+			} else if (behind > (long) maxFrameSkip * period) {
+				// Too far behind to ever catch up by skipping.
+				droppedFrames += behind / period;
+				deadline = end;
+			}
+		}
+		return deadline;
+	}
+
+	/**
+	 * Wait until a deadline: park for most of it, then yield for the last
+	 * {@link #getSpinNanos()}.
+	 *
+	 * @param deadline A {@link System#nanoTime()} value.
+	 */
+	void waitUntil(long deadline) {
+		final long spin = spinNanos;
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return;
+			}
+			if (remaining > spin) {
+				LockSupport.parkNanos(remaining - spin);
+			} else {
+				Thread.yield();
+			}
+			// Leave the flag set, so whoever interrupted us can see it.
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Run frames until the application stops, or until this thread is
+	 * interrupted (which stops the application).
+	 *
+	 * @param app The application.
+	 */
+	void run(GFX app) {
+		begin(System.nanoTime());
+		while (app.isRunning()) {
+			if (isIdle(app)) {
+				final long asleep = System.nanoTime();
+				app.awaitRedrawRequest();
+				wake(app, asleep, System.nanoTime());
+			} else {
+				app.beforeFrame();
+				long next = frame(app);
+				long idle = System.nanoTime();
+				waitUntil(next);
+				app.getMetrics().add(FrameMetrics.Phase.IDLE, System.nanoTime() - idle);
+			}
+			if (Thread.interrupted()) {
+				// With the flag set, every park returns at once and we would never
+				// wait again, so treat it as a request to quit.
+				app.stop();
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package me.jjfoley.gfx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A picture the size of the window that you change pixel by pixel, which is
+ * drawn underneath {@link GFX#draw} every frame. Get it from
+ * {@link GFX#getFramebuffer()}.
+ * 
+ * The pixels are an {@code int[]}, one per pixel, row by row, as 0xRRGGBB. The
+ * same array backs the image that goes to the screen, so nothing is copied.
+ * For effects that touch every pixel, {@link #shade(PixelShader)} splits the
+ * screen into tiles and computes them on every core.
+ * 
+ * Change the pixels from {@link GFX#update} or {@link GFX#draw}. With
+ * {@link GFX#setPipelined(boolean)}, changes made in update may show up half
+ * way through a frame.
+ * 
+ * @author jfoley
+ *
+ */
+public class Framebuffer {
+	/**
+	 * The default width and height of a tile, in pixels.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	private final BufferedImage image;
+	private final int[] pixels;
+	private final int width;
+	private final int height;
+
+	private volatile int tileSize = DEFAULT_TILE_SIZE;
+	/**
+	 * The pool that runs tiles; the common pool unless
+	 * {@link #setParallelism(int)} was called.
+	 */
+	private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Create a framebuffer; use {@link GFX#getFramebuffer()} instead.
+	 */
+	Framebuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * @return The width in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the pixels themselves: pixel (x, y) is at {@code x + y * getWidth()},
+	 * as 0xRRGGBB. Changes show up on the screen at the next frame.
+	 * 
+	 * @return The pixel array (not a copy).
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * @return The image that shares {@link #getPixels()}.
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @param x The column.
+	 * @param y The row.
+	 * @return The color of the pixel as 0xRRGGBB.
+	 */
+	public int getPixel(int x, int y) {
+		return pixels[x + y * width];
+	}
+
+	/**
+	 * @param x   The column.
+	 * @param y   The row.
+	 * @param rgb The new color as 0xRRGGBB.
+	 */
+	public void setPixel(int x, int y, int rgb) {
+		pixels[x + y * width] = rgb;
+	}
+
+	/**
+	 * Set every pixel to one color.
+	 * 
+	 * @param rgb The color as 0xRRGGBB.
+	 */
+	public void fill(int rgb) {
+		Arrays.fill(pixels, rgb);
+	}
+
+	/**
+	 * @return The width and height of the tiles used by {@link #shade}.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Smaller tiles share the work more evenly between cores; bigger ones have
+	 * less overhead.
+	 * 
+	 * @param tileSize The width and height of a tile, in pixels.
+	 */
+	public void setTileSize(int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("tileSize must be at least 1: " + tileSize);
+		}
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * @return How many threads {@link #shade} uses.
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Choose how many threads {@link #shade} uses. By default it shares Java's
+	 * common pool, which has one thread per core.
+	 * 
+	 * @param threads How many threads, at least one.
+	 */
+	public synchronized void setParallelism(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1: " + threads);
+		}
+		ForkJoinPool old = pool;
+		pool = new ForkJoinPool(threads);
+		if (old != ForkJoinPool.commonPool()) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Compute the color of every pixel with a shader, split into tiles that run
+	 * on many threads at once. This returns when every pixel is done.
+	 * 
+	 * @param shader Computes each pixel; called from many threads.
+	 */
+	public void shade(PixelShader shader) {
+		final int size = tileSize;
+		final int across = (width + size - 1) / size;
+		final int down = (height + size - 1) / size;
+		pool.invoke(new Tiles(shader, size, across, 0, across * down));
+	}
+
+	/**
+	 * Compute one rectangle of pixels on this thread.
+	 */
+	private void shadeTile(PixelShader shader, int x0, int y0, int x1, int y1) {
+		for (int y = y0; y < y1; y++) {
+			int row = y * width;
+			for (int x = x0; x < x1; x++) {
+				pixels[row + x] = shader.shade(x, y);
+			}
+		}
+	}
+
+	/**
+	 * A range of tiles, split in half until there is only one.
+	 */
+	private final class Tiles extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final PixelShader shader;
+		private final int size;
+		private final int across;
+		private final int lo;
+		private final int hi;
+
+		Tiles(PixelShader shader, int size, int across, int lo, int hi) {
+			this.shader = shader;
+			this.size = size;
+			this.across = across;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Tiles(shader, size, across, lo, mid), new Tiles(shader, size, across, mid, hi));
+				return;
+			}
+			int x0 = (lo % across) * size;
+			int y0 = (lo / across) * size;
+			shadeTile(shader, x0, y0, Math.min(x0 + size, width), Math.min(y0 + size, height));
+		}
+	}
+}
@@ -1,12 +1,20 @@
 package me.jjfoley.gfx;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -38,7 +46,7 @@ public class MyDrawing extends GFX {
  * </pre>
  * 
  * @author jfoley
- *
+ * 
  */
 public abstract class GFX {
 	/**
@@ -46,10 +54,23 @@ public abstract class GFX {
 	 * window closing.
 	 */
 	private EventManager events;
+	/**
+	 * Where {@link #processClick()} copies each click out of the queue.
+	 */
+	private final GFXEvent clickEvent = new GFXEvent();
 	/**
 	 * The actual view is a Canvas of fixed size.
 	 */
 	private GFXView view;
+	/**
+	 * Where frames are actually drawn: the {@link #view}, or an
+	 * {@link OffscreenView} when running headless.
+	 */
+	private volatile RenderTarget target;
+	/**
+	 * The image we draw to when running headless, or null.
+	 */
+	private volatile OffscreenView offscreen;
 	/**
 	 * The window we open is called a JFrame.
 	 */
@@ -59,6 +80,135 @@ public abstract class GFX {
 	 */
 	public static int FPS = 50;
 
+	/**
+	 * This decides when frames happen and how update is called; see
+	 * {@link FrameScheduler}.
+	 */
+	private volatile FrameScheduler scheduler = new FrameScheduler();
+
+	/**
+	 * Timings of each part of recent frames.
+	 */
+	private final FrameMetrics metrics = new FrameMetrics();
+
+	/**
+	 * The rendering hints used when no {@link #qualityController} is set.
+	 */
+	private volatile Quality quality = Quality.HIGH;
+	/**
+	 * Picks the {@link Quality} each frame, or null.
+	 */
+	private volatile QualityController qualityController;
+	/**
+	 * The fraction of the window's resolution to draw at, when there is no
+	 * {@link #renderScaleController}.
+	 */
+	private volatile double renderScale = 1.0;
+	/**
+	 * How a frame drawn below full resolution is stretched to the window.
+	 */
+	private volatile Upscale upscale = Upscale.BILINEAR;
+	/**
+	 * Picks the render scale each frame, or null.
+	 */
+	private volatile RenderScaleController renderScaleController;
+	/**
+	 * Where frames are drawn below full resolution; only used by the thread
+	 * drawing frames.
+	 */
+	private final ScaledFrame scaledFrame = new ScaledFrame();
+	/**
+	 * Draws one frame at full resolution; kept so each frame doesn't make one.
+	 */
+	private final ScaledFrame.FramePainter framePainter = this::paintFrameTo;
+	/**
+	 * What {@link #planFrame()} picked for the frame being drawn; only used by
+	 * the thread drawing frames.
+	 */
+	private double frameScale = 1.0;
+	private double frameMaxScale = 1.0;
+	private Quality frameQuality = Quality.HIGH;
+	/**
+	 * Should {@link #paintFrameTo} add its time to the metrics? Only the first
+	 * time a frame is drawn, not when it is drawn again after being lost.
+	 */
+	private boolean measuring;
+	/**
+	 * The recorder's picture of the last frame, if it was drawn there, so
+	 * {@link #repaintFrame} can copy it instead of drawing it again.
+	 */
+	private BufferedImage repaintFrom;
+	/**
+	 * Can the window be resized by dragging its edges?
+	 */
+	private volatile boolean resizable = false;
+
+	/**
+	 * Should we draw {@link #metrics} on top of each frame?
+	 */
+	private volatile boolean metricsOverlay = false;
+
+	/**
+	 * Should update and draw run on separate threads?
+	 */
+	private volatile boolean pipelined = false;
+	/**
+	 * The thread that draws while pipelined, or null.
+	 */
+	private volatile Thread renderThread;
+	/**
+	 * How many frames the update thread has asked the render thread for.
+	 */
+	private final AtomicLong renderRequests = new AtomicLong();
+
+	/**
+	 * Should we only draw when something changed?
+	 */
+	private volatile boolean renderOnDemand = false;
+	/**
+	 * Set when something changed and a frame should be drawn.
+	 */
+	private final AtomicBoolean redrawRequested = new AtomicBoolean(true);
+	/**
+	 * The thread running frames, so we can wake it up, or null.
+	 */
+	private volatile Thread loopThread;
+	/**
+	 * The {@link GFXRuntime} running our frames instead of a loop thread, or null.
+	 */
+	private volatile GFXRuntime.Instance runtime;
+
+	/**
+	 * Every {@link Layer}, sorted by z. Replaced (never changed) when layers are
+	 * added or removed, so drawing can read it without locking.
+	 */
+	private volatile Layer[] layers = new Layer[0];
+
+	/**
+	 * Images loaded by this application.
+	 */
+	private final ImageAssets assets = new ImageAssets();
+
+	/**
+	 * Pixels drawn underneath {@link #draw}, or null if never asked for.
+	 */
+	private volatile Framebuffer framebuffer;
+
+	/**
+	 * Saves each frame while recording, or null.
+	 */
+	private volatile FrameRecorder recorder;
+
+	/**
+	 * Saves every event and update while recording input, or null.
+	 */
+	private volatile InputRecorder inputRecorder;
+
+	/**
+	 * Runs the work given to {@link #runAsync} and hands back its results.
+	 */
+	private final AsyncRunner async = new AsyncRunner(this);
+
 	/**
 	 * This variable tells us whether we are running our application or not. When
 	 * set to false, we will eventually close the window.
@@ -85,6 +235,7 @@ public abstract class GFX {
 	 */
 	public GFX(int width, int height) {
 		this.view = new GFXView(width, height, this);
+		this.target = view;
 		this.events = new EventManager(this);
 	}
 
@@ -94,7 +245,7 @@ public abstract class GFX {
 	 * @return The width of the window.
 	 */
 	public final int getWidth() {
-		return view.getWidth();
+		return target.getWidth();
 	}
 
 	/**
@@ -103,7 +254,7 @@ public abstract class GFX {
 	 * @return The height of the window.
 	 */
 	public final int getHeight() {
-		return view.getHeight();
+		return target.getHeight();
 	}
 
 	/**
@@ -116,12 +267,97 @@ public abstract class GFX {
 	}
 
 	/**
-	 * Get the last mouseClick and make sure we only retrieve it once.
+	 * Get the oldest mouse click we haven't handed out yet, so each is only
+	 * retrieved once. Clicks wait in line (the oldest are dropped past
+	 * {@value EventManager#CLICK_CAPACITY}), so if several happen in one frame,
+	 * call this until it returns null to see all of them:
+	 * 
+	 * <pre>
+	 * {@code
+	IntPoint click;
+	while ((click = processClick()) != null) { ... }
+	}
+	 * </pre>
 	 * 
-	 * @return The {@link IntPoint} last clicked or null.
+	 * Call it from the thread running frames, e.g., in {@link #update}.
+	 * 
+	 * @return The {@link IntPoint} clicked or null.
 	 */
 	public final IntPoint processClick() {
-		return events.lastClick.getAndSet(null);
+		final GFXEvent e = clickEvent;
+		if (!events.clicks.poll(e)) {
+			return null;
+		}
+		return new IntPoint(e.getX(), e.getY());
+	}
+
+	/**
+	 * Take every key and mouse event that has arrived since the last call, in
+	 * order, up to the size of the array. Clicks show up here as well as in
+	 * {@link #processClick()}; taking them from one doesn't take them from the
+	 * other.
+	 * 
+	 * The events are copied into the objects already in the array (null entries
+	 * are filled in once), so keep the same array around between frames:
+	 * 
+	 * <pre>
+	 * {@code
+	GFXEvent[] events = new GFXEvent[64];
+	...
+	int n = pollEvents(events);
+	for (int i = 0; i < n; i++) {
+		if (events[i].getType() == GFXEvent.Type.MOUSE_DRAGGED) { ... }
+	}
+	}
+	 * </pre>
+	 * 
+	 * @param into The events to fill in.
+	 * @return How many were filled in; less than {@code into.length} means there
+	 *         are no more for now.
+	 */
+	public final int pollEvents(GFXEvent[] into) {
+		int n = 0;
+		while (n < into.length) {
+			if (into[n] == null) {
+				into[n] = new GFXEvent();
+			}
+			if (!events.queue.poll(into[n])) {
+				break;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Take the oldest key or mouse event that has not been taken yet.
+	 * 
+	 * @param into The event to fill in.
+	 * @return false if there were no events.
+	 */
+	public final boolean pollEvent(GFXEvent into) {
+		return events.queue.poll(into);
+	}
+
+	/**
+	 * Access the queue behind {@link #pollEvents}, to choose what happens when
+	 * events arrive faster than you take them, or how many were lost.
+	 * 
+	 * @return The {@link InputQueue}.
+	 */
+	public final InputQueue getInputQueue() {
+		return events.queue;
+	}
+
+	/**
+	 * Find out which modifier keys (and mouse buttons) are down, e.g.,
+	 * {@code (getModifiers() & InputEvent.SHIFT_DOWN_MASK) != 0}.
+	 * 
+	 * @return The modifiers as of the latest event, see
+	 *         {@link java.awt.event.InputEvent#getModifiersEx()}.
+	 */
+	public final int getModifiers() {
+		return events.getModifiers();
 	}
 
 	/**
@@ -130,7 +366,36 @@ public abstract class GFX {
 	 * @return a {@link IntPoint} object with x and y information.
 	 */
 	public final IntPoint getMouseLocation() {
-		return events.lastMousePosition.get();
+		return events.getMousePoint();
+	}
+
+	/**
+	 * Is the mouse over the window right now?
+	 * 
+	 * @return true if {@link #getMouseX()} and {@link #getMouseY()} mean something.
+	 */
+	public final boolean isMouseInWindow() {
+		return events.getMousePacked() != EventManager.NO_MOUSE;
+	}
+
+	/**
+	 * Get the x coordinate of the mouse, without creating any objects.
+	 * 
+	 * @return The x coordinate, or -1 if the mouse is not in the window.
+	 */
+	public final int getMouseX() {
+		long packed = events.getMousePacked();
+		return packed == EventManager.NO_MOUSE ? -1 : IntPoint.unpackX(packed);
+	}
+
+	/**
+	 * Get the y coordinate of the mouse, without creating any objects.
+	 * 
+	 * @return The y coordinate, or -1 if the mouse is not in the window.
+	 */
+	public final int getMouseY() {
+		long packed = events.getMousePacked();
+		return packed == EventManager.NO_MOUSE ? -1 : IntPoint.unpackY(packed);
 	}
 
 	/**
@@ -141,7 +406,7 @@ public abstract class GFX {
 	 * @return true if the key is pressed.
 	 */
 	public final boolean isKeyDown(int code) {
-		return events.keyState.containsKey(code);
+		return events.isKeyDown(code);
 	}
 
 	/**
@@ -152,125 +417,1118 @@ public abstract class GFX {
 	 * @return true if the key is down, false if it was not down.
 	 */
 	public final boolean processKey(int code) {
-		return events.keyState.remove(code) != null;
+		return events.setKey(code, false);
 	}
 
 	/**
-	 * Actually open the window (private method!)
+	 * Access the scheduler that paces frames, to change its mode or read its
+	 * statistics.
+	 * 
+	 * @return The {@link FrameScheduler} in use.
 	 */
-	private void setupSwing() {
-		synchronized (this) {
-			try {
-				SwingUtilities.invokeAndWait(() -> {
-					// Build the window which has one thing in it, our 'view' object.
-					frame = new JFrame(this.getClass().getSimpleName());
-					JPanel panel = new JPanel(new BorderLayout());
-					panel.add(view, BorderLayout.CENTER);
-					frame.setContentPane(panel);
-					frame.pack();
-					frame.setResizable(false);
-					frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+	public final FrameScheduler getScheduler() {
+		return scheduler;
+	}
 
-					// Connect event manager to Java's systems:
-					frame.addWindowListener(events);
-					frame.addKeyListener(events);
-					view.addMouseListener(events);
-					view.addMouseMotionListener(events);
+	/**
+	 * Replace the scheduler that paces frames. Do this before {@link #start()}.
+	 * 
+	 * @param scheduler The new {@link FrameScheduler}.
+	 */
+	public final void setScheduler(FrameScheduler scheduler) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler cannot be null");
+		}
+		this.scheduler = scheduler;
+	}
 
-					frame.setVisible(true);
-					running.set(true);
-				});
-			} catch (InterruptedException | InvocationTargetException e) {
-				throw new RuntimeException("Couldn't start up GUI due to threading bug", e);
-			}
+	/**
+	 * Access the timings of recent frames: how long update, clearing, drawing,
+	 * presenting and waiting took.
+	 * 
+	 * @return The {@link FrameMetrics} for this application.
+	 */
+	public final FrameMetrics getMetrics() {
+		return metrics;
+	}
 
-		}
+	/**
+	 * @return How nicely frames are being drawn right now; check it in
+	 *         {@link #draw} to skip optional detail when it is low.
+	 */
+	public final Quality getQuality() {
+		QualityController c = qualityController;
+		return c != null ? c.getLevel() : quality;
 	}
 
 	/**
-	 * Open the window and run your {@link #draw} method over and over!
+	 * Choose how nicely to draw; the default is {@link Quality#HIGH}. With a
+	 * {@link QualityController}, this jumps it to a level instead.
+	 * 
+	 * @param quality The new level.
 	 */
-	public final void start() {
-		this.setupSwing();
+	public final void setQuality(Quality quality) {
+		if (quality == null) {
+			throw new NullPointerException("quality");
+		}
+		this.quality = quality;
+		QualityController c = qualityController;
+		if (c != null) {
+			c.setLevel(quality);
+		}
+	}
 
-		long lastTime = System.nanoTime();
-		try {
-			while (running.get()) {
-				final int delay_ms = 1000 / FPS;
-				frame.requestFocusInWindow();
-				final long now = System.nanoTime();
-				update((now - lastTime) / 1e9);
-				lastTime = now;
-				view.render();
-				try {
-					Thread.sleep(delay_ms);
-				} catch (InterruptedException e) {
-					e.printStackTrace(System.err);
-				}
-			}
-		} finally {
-			this.stop();
-			frame.setVisible(false);
+	/**
+	 * Let a controller lower the {@link Quality} when frames take too long, and
+	 * raise it again when they are fast.
+	 * 
+	 * @param controller The controller, or null to go back to a fixed level.
+	 */
+	public final void setQualityController(QualityController controller) {
+		if (controller != null) {
+			controller.setLevel(quality);
 		}
+		this.qualityController = controller;
 	}
 
 	/**
-	 * Start the window in the background.
-	 * You probably want {@link #start} instead.
+	 * @return The quality controller, or null.
 	 */
-	public final void startViewer() {
-		Thread already = null;
-		synchronized (this) {
-			already = this.updater.get();
+	public final QualityController getQualityController() {
+		return qualityController;
+	}
+
+	/**
+	 * Draw at a lower resolution than the window, and stretch the result to fit.
+	 * At 0.5, a quarter as many pixels are drawn, which helps a lot when filling
+	 * a big window is what makes frames slow. Your {@link #draw} method does not
+	 * change: the size and mouse positions are still in window pixels.
+	 * 
+	 * @param scale The fraction of the window's resolution, from more than 0 up to
+	 *              1 (the default).
+	 */
+	public final void setRenderScale(double scale) {
+		if (!(scale > 0 && scale <= 1)) {
+			throw new IllegalArgumentException("render scale must be in (0, 1]: " + scale);
 		}
-		if (already == null) {
-			GFX app = this;
-			this.setupSwing();
-			Thread updater = new Thread(app::start);
-			this.updater.set(updater);
-			updater.start();
+		this.renderScale = scale;
+		RenderScaleController c = renderScaleController;
+		if (c != null) {
+			c.setScale(scale);
 		}
 	}
 
 	/**
-	 * Change the title of your window.
+	 * @return The fraction of the window's resolution frames are drawn at.
+	 */
+	public final double getRenderScale() {
+		RenderScaleController c = renderScaleController;
+		return c != null ? c.getScale() : renderScale;
+	}
+
+	/**
+	 * @param upscale How to stretch frames drawn below full resolution; the
+	 *                default is {@link Upscale#BILINEAR}.
+	 */
+	public final void setUpscale(Upscale upscale) {
+		if (upscale == null) {
+			throw new NullPointerException("upscale");
+		}
+		this.upscale = upscale;
+	}
+
+	/**
+	 * @return How frames drawn below full resolution are stretched.
+	 */
+	public final Upscale getUpscale() {
+		return upscale;
+	}
+
+	/**
+	 * Let a controller lower the {@link #setRenderScale(double) render scale}
+	 * when frames take too long, and raise it again when they are fast.
 	 * 
-	 * @param title What to change the title to.
+	 * @param controller The controller, or null to go back to a fixed scale.
 	 */
-	public final synchronized void setTitle(String title) {
-		this.frame.setTitle(title);
+	public final void setRenderScaleController(RenderScaleController controller) {
+		if (controller != null) {
+			controller.setScale(renderScale);
+		}
+		this.renderScaleController = controller;
 	}
 
 	/**
-	 * Tell the window to close (e.g., if you want to make a game over
-	 * functionality)
+	 * @return The render scale controller, or null.
 	 */
-	public final void stop() {
-		running.set(false);
-		Thread maybeUpdater = updater.getAndSet(null);
-		if (maybeUpdater != null) {
-			try {
-				maybeUpdater.join();
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
+	public final RenderScaleController getRenderScaleController() {
+		return renderScaleController;
+	}
+
+	/**
+	 * Choose whether the window can be resized by dragging its edges; by default
+	 * it can't. {@link #getWidth()} and {@link #getHeight()} always give the
+	 * current size, so draw with those. The {@link Framebuffer} keeps the size
+	 * the window started at.
+	 * 
+	 * @param resizable true to allow resizing.
+	 */
+	public final void setResizable(boolean resizable) {
+		this.resizable = resizable;
+		SwingUtilities.invokeLater(() -> {
+			synchronized (this) {
+				view.setResizable(resizable);
+				if (frame != null) {
+					frame.setResizable(resizable);
+					if (!resizable) {
+						frame.pack();
+					}
+				}
 			}
+		});
+	}
+
+	/**
+	 * @return true if the window can be resized.
+	 */
+	public final boolean isResizable() {
+		return resizable;
+	}
+
+	/**
+	 * Choose how frames get to the screen. More buffers let drawing run ahead of
+	 * the screen at the cost of a little latency; page flipping avoids a copy but
+	 * usually needs full-screen mode. The default is {@link PresentMode#AUTO}
+	 * with 2 buffers. Check {@link #getPresentStats()} to see what you got.
+	 * 
+	 * @param mode    Flip, blit, or let Java choose.
+	 * @param buffers How many buffers, including the screen: 2 is double
+	 *                buffering, 3 is triple buffering.
+	 */
+	public final void setPresentation(PresentMode mode, int buffers) {
+		if (mode == null) {
+			throw new NullPointerException("mode");
 		}
+		if (buffers < 1) {
+			throw new IllegalArgumentException("need at least one buffer: " + buffers);
+		}
+		view.setPresentation(mode, buffers);
 	}
 
 	/**
-	 * Optional method to override if you want to separate updates from drawing, or
-	 * to make time-perfect animations.
+	 * Call {@link Toolkit#sync()} after showing each frame, so it reaches the
+	 * screen right away instead of whenever the window system gets to it. This
+	 * makes animation smoother on some Linux desktops. A {@link GFXRuntime}
+	 * already does this once for all of its windows.
 	 * 
-	 * @param dt The time since we last called your update method, in seconds.
+	 * @param sync true to sync after every frame; false (the default) not to.
 	 */
-	public void update(double dt) {
+	public final void setToolkitSync(boolean sync) {
+		view.setToolkitSync(sync);
 	}
 
 	/**
-	 * Override this method in order to draw your own animations.
+	 * @return Counts of frames shown, lost and drawn again.
+	 */
+	public final PresentStats getPresentStats() {
+		return view.getStats();
+	}
+
+	/**
+	 * Do some slow work (loading a file, finding a path) on a background thread,
+	 * without stopping the frames. When it is done, onDone gets the result on the
+	 * thread that calls {@link #update}, just before update, so it can change
+	 * what {@link #draw} looks at without any locks. If the work throws, the
+	 * exception is thrown from there instead.
 	 * 
-	 * @param g A standard Java {@link Graphics2D} object that can make a variety of
-	 *          shapes and colors.
+	 * <pre>
+	 * {@code
+	runAsync(() -> loadLevel("level2.txt"), level -> this.level = level);
+	}
+	 * </pre>
+	 * 
+	 * The work itself must not touch anything draw or update uses.
+	 * 
+	 * @param <T>    The type of the result.
+	 * @param work   The slow work.
+	 * @param onDone What to do with the result, or null.
+	 * @return A handle that can cancel the task.
 	 */
-	public abstract void draw(Graphics2D g);
+	public final <T> AsyncTask<T> runAsync(Callable<? extends T> work, Consumer<? super T> onDone) {
+		return runAsync(work, onDone, null);
+	}
+
+	/**
+	 * Like {@link #runAsync(Callable, Consumer)}, but with a way to handle the
+	 * work failing.
+	 * 
+	 * @param <T>     The type of the result.
+	 * @param work    The slow work.
+	 * @param onDone  What to do with the result, or null.
+	 * @param onError What to do with the exception if the work throws, or null to
+	 *                throw it from the frame.
+	 * @return A handle that can cancel the task.
+	 */
+	public final <T> AsyncTask<T> runAsync(Callable<? extends T> work, Consumer<? super T> onDone,
+			Consumer<? super Throwable> onError) {
+		if (work == null) {
+			throw new NullPointerException("work");
+		}
+		return async.submit(work, onDone, onError);
+	}
+
+	/**
+	 * Choose where {@link #runAsync} work runs. By default it is a shared pool of
+	 * background threads (virtual threads on Java 21 and newer; see
+	 * {@link #isAsyncVirtual()}). We never shut down an executor given here;
+	 * that's up to you.
+	 * 
+	 * @param executor The executor, or null to go back to the default.
+	 */
+	public final void setAsyncExecutor(ExecutorService executor) {
+		async.setExecutor(executor);
+	}
+
+	/**
+	 * Limit how many {@link #runAsync} results are handed back each frame, so a
+	 * burst of finished tasks can't make one frame slow. The rest wait for the
+	 * next frames. The default is {@value AsyncRunner#DEFAULT_BUDGET}.
+	 * 
+	 * @param perFrame How many results per frame; at least 1.
+	 */
+	public final void setAsyncBudget(int perFrame) {
+		async.setBudget(perFrame);
+	}
+
+	/**
+	 * @return How many {@link #runAsync} tasks are still running or waiting to be
+	 *         handed back.
+	 */
+	public final int getPendingAsync() {
+		return async.getPending();
+	}
+
+	/**
+	 * Check which kind of threads the default {@link #runAsync} executor uses.
+	 * On Java 21 and newer, every task gets its own virtual thread, so it is fine
+	 * to start many tasks that mostly wait (on files or the network). Before
+	 * that, tasks share a few ordinary threads, and only a few thousand can wait
+	 * for one; more than that fail with a RejectedExecutionException, handed
+	 * back like any other failure.
+	 * 
+	 * @return true if the default executor runs tasks on virtual threads.
+	 */
+	public static boolean isAsyncVirtual() {
+		return AsyncThreads.isVirtual();
+	}
+
+	/**
+	 * Turn on or off a display of {@link #getMetrics()} in the top-left corner of
+	 * the window, drawn after your {@link #draw} method.
+	 * 
+	 * @param show true to show the frame timings.
+	 */
+	public final void setMetricsOverlay(boolean show) {
+		this.metricsOverlay = show;
+	}
+
+	/**
+	 * Run {@link #update} and {@link #draw} on two different threads, so that
+	 * the next frame is updated while the previous one is drawn. On a computer
+	 * with more than one core, a frame then costs about as much as the slower of
+	 * the two, rather than both added together. Call this before
+	 * {@link #start()}.
+	 * 
+	 * Because draw now happens at the same time as update, draw must not read
+	 * anything update changes. Instead, update should copy what draw needs into
+	 * a {@link TripleBuffer} and publish it, and draw should only read the
+	 * buffer's front. {@link #processClick()}, {@link #isKeyDown} and
+	 * {@link #pollEvents} belong in update.
+	 * 
+	 * @param pipelined true to use two threads.
+	 */
+	public final void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * @return true if update and draw run on separate threads.
+	 */
+	public final boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * Access the image cache, which loads pictures once, keeps them in a format
+	 * that is fast to draw, and stays under a memory budget.
+	 * 
+	 * @return The {@link ImageAssets} for this application.
+	 */
+	public final ImageAssets getAssets() {
+		return assets;
+	}
+
+	/**
+	 * Access a picture the size of the window that you can change pixel by pixel
+	 * (or with a {@link PixelShader} on every core). Once you ask for it, it is
+	 * drawn instead of the black background every frame, underneath your
+	 * {@link #draw} method.
+	 * 
+	 * @return The {@link Framebuffer}, created the first time.
+	 */
+	public final Framebuffer getFramebuffer() {
+		Framebuffer fb = framebuffer;
+		if (fb == null) {
+			synchronized (this) {
+				fb = framebuffer;
+				if (fb == null) {
+					fb = new Framebuffer(getWidth(), getHeight());
+					framebuffer = fb;
+				}
+			}
+		}
+		return fb;
+	}
+
+	/**
+	 * Start saving every frame drawn, e.g., to review a session later. Frames are
+	 * copied into a queue and saved by background threads, so this costs one copy
+	 * of the picture per frame.
+	 * 
+	 * @param recorder Where and how to save; see {@link FrameRecorder}.
+	 * @throws IllegalStateException if we are already recording.
+	 */
+	public final void startRecording(FrameRecorder recorder) {
+		synchronized (this) {
+			if (this.recorder != null) {
+				throw new IllegalStateException("Already recording to " + this.recorder.getOutput());
+			}
+			recorder.start(getWidth(), getHeight());
+			this.recorder = recorder;
+		}
+	}
+
+	/**
+	 * Stop saving frames, and wait for the ones in the queue to be saved. This also
+	 * happens when the app stops.
+	 * 
+	 * @return The recorder that was running (for its statistics), or null.
+	 */
+	public final FrameRecorder stopRecording() {
+		FrameRecorder r;
+		synchronized (this) {
+			r = recorder;
+			recorder = null;
+		}
+		if (r != null) {
+			r.finish();
+		}
+		return r;
+	}
+
+	/**
+	 * @return The recorder saving frames right now, or null.
+	 */
+	public final FrameRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Start saving every event and every dt given to {@link #update}, so the
+	 * session can be played back later by an {@link InputReplay}, e.g., to
+	 * reproduce a slow frame.
+	 * 
+	 * @param recorder Where to save; see {@link InputRecorder}.
+	 * @throws IllegalStateException if we are already recording input.
+	 */
+	public final void startInputRecording(InputRecorder recorder) {
+		synchronized (this) {
+			if (this.inputRecorder != null) {
+				throw new IllegalStateException("Already recording input to " + this.inputRecorder.getOutput());
+			}
+			recorder.start(getWidth(), getHeight(), scheduler.getTargetFps());
+			this.inputRecorder = recorder;
+		}
+	}
+
+	/**
+	 * Stop saving input and close the file. This also happens when the app stops.
+	 * 
+	 * @return The recorder that was running, or null.
+	 */
+	public final InputRecorder stopInputRecording() {
+		InputRecorder r;
+		synchronized (this) {
+			r = inputRecorder;
+			inputRecorder = null;
+		}
+		if (r != null) {
+			r.finish();
+		}
+		return r;
+	}
+
+	/**
+	 * @return The recorder saving input right now, or null.
+	 */
+	InputRecorder getInputRecorder() {
+		return inputRecorder;
+	}
+
+	/**
+	 * Add a layer: a part of the picture drawn by its own painter. A static layer
+	 * is painted once into an image and reused until you call
+	 * {@link Layer#invalidate()}, so expensive backgrounds only cost a copy per
+	 * frame.
+	 * 
+	 * <pre>
+	 * {@code
+	Layer background = addLayer(-1, true, g -> drawExpensiveBackground(g));
+	}
+	 * </pre>
+	 * 
+	 * @param z        Where to put it: below zero is underneath {@link #draw},
+	 *                 zero and up is on top. Layers with the same z are drawn in
+	 *                 the order they were added.
+	 * @param isStatic true to cache it in an image.
+	 * @param painter  Draws the layer.
+	 * @return The new {@link Layer}.
+	 */
+	public final Layer addLayer(int z, boolean isStatic, Consumer<Graphics2D> painter) {
+		Layer layer = new Layer(z, isStatic, painter);
+		synchronized (this) {
+			Layer[] before = layers;
+			Layer[] after = new Layer[before.length + 1];
+			int i = 0;
+			while (i < before.length && before[i].getZ() <= z) {
+				after[i] = before[i];
+				i++;
+			}
+			after[i] = layer;
+			System.arraycopy(before, i, after, i + 1, before.length - i);
+			layers = after;
+		}
+		return layer;
+	}
+
+	/**
+	 * Take a layer away.
+	 * 
+	 * @param layer A layer from {@link #addLayer}.
+	 * @return false if it was not one of ours.
+	 */
+	public final boolean removeLayer(Layer layer) {
+		synchronized (this) {
+			Layer[] before = layers;
+			for (int i = 0; i < before.length; i++) {
+				if (before[i] == layer) {
+					Layer[] after = new Layer[before.length - 1];
+					System.arraycopy(before, 0, after, 0, i);
+					System.arraycopy(before, i + 1, after, i, after.length - i);
+					layers = after;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Only draw when something changes, instead of {@link #FPS} times a second
+	 * forever. In between, the loop sleeps and uses no CPU at all. A frame
+	 * happens when a key or the mouse is used, when the window needs painting, or
+	 * when {@link #requestRedraw()} is called (from anywhere, including
+	 * {@link #update}, which keeps an animation going as long as it keeps asking).
+	 * See {@link FrameScheduler#getSkippedFrames()} for how many frames this saves.
+	 * 
+	 * @param onDemand true to draw only when needed.
+	 */
+	public final void setRenderOnDemand(boolean onDemand) {
+		this.renderOnDemand = onDemand;
+		requestRedraw();
+	}
+
+	/**
+	 * @return true if we only draw when something changes.
+	 */
+	public final boolean isRenderOnDemand() {
+		return renderOnDemand;
+	}
+
+	/**
+	 * Ask for another frame to be drawn, when using
+	 * {@link #setRenderOnDemand(boolean)}. Safe to call from any thread.
+	 */
+	public final void requestRedraw() {
+		if (!redrawRequested.getAndSet(true)) {
+			Thread loop = loopThread;
+			if (loop != null) {
+				LockSupport.unpark(loop);
+			}
+			GFXRuntime.Instance rt = runtime;
+			if (rt != null) {
+				rt.wake();
+			}
+		}
+	}
+
+	/**
+	 * @return true if a frame has been asked for and not drawn yet.
+	 */
+	boolean isRedrawRequested() {
+		return redrawRequested.get();
+	}
+
+	/**
+	 * Take the request for a frame, if there is one.
+	 * 
+	 * @return true if a frame should be drawn.
+	 */
+	boolean takeRedrawRequest() {
+		return redrawRequested.getAndSet(false);
+	}
+
+	/**
+	 * Sleep until a frame is asked for, we stop, or this thread is interrupted.
+	 */
+	void awaitRedrawRequest() {
+		while (running.get() && !redrawRequested.get() && !Thread.currentThread().isInterrupted()) {
+			LockSupport.park(this);
+		}
+	}
+
+	/**
+	 * @return true while the application is running.
+	 */
+	public final boolean isRunning() {
+		return running.get();
+	}
+
+	/**
+	 * @return The object collecting input for this application.
+	 */
+	EventManager getEventManager() {
+		return events;
+	}
+
+	/**
+	 * Called before each frame by the {@link FrameScheduler}.
+	 */
+	void beforeFrame() {
+		// Only ask for focus if keys would not come to us otherwise.
+		if (frame != null && frame.getMostRecentFocusOwner() != frame) {
+			frame.requestFocusInWindow();
+		}
+	}
+
+	/**
+	 * Called at the start of each frame, before any updates, to hand back the
+	 * results of {@link #runAsync}.
+	 */
+	void deliverAsync() {
+		final long start = System.nanoTime();
+		if (async.deliver() > 0) {
+			metrics.add(FrameMetrics.Phase.UPDATE, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Called by the {@link FrameScheduler} every time update should happen.
+	 * 
+	 * @param dt The time step, in seconds.
+	 */
+	void stepUpdate(double dt) {
+		final InputRecorder r = inputRecorder;
+		if (r != null) {
+			r.recordUpdate(dt);
+		}
+		final long start = System.nanoTime();
+		update(dt);
+		metrics.add(FrameMetrics.Phase.UPDATE, System.nanoTime() - start);
+	}
+
+	/**
+	 * Called by the {@link FrameScheduler} every time a frame should be drawn.
+	 */
+	void renderFrame() {
+		final InputRecorder r = inputRecorder;
+		if (r != null) {
+			r.recordRender();
+		}
+		Thread renderer = renderThread;
+		if (renderer != null) {
+			renderRequests.incrementAndGet();
+			LockSupport.unpark(renderer);
+			return;
+		}
+		target.render();
+	}
+
+	/**
+	 * Run frames with the {@link #scheduler} until we stop, with a render thread
+	 * if {@link #setPipelined(boolean)} asked for one.
+	 */
+	private void runLoop() {
+		loopThread = Thread.currentThread();
+		try {
+			runLoopOn();
+		} finally {
+			loopThread = null;
+		}
+	}
+
+	/**
+	 * The body of {@link #runLoop()}.
+	 */
+	private void runLoopOn() {
+		if (!pipelined) {
+			scheduler.run(this);
+			return;
+		}
+		Thread renderer = new Thread(this::renderLoop, getClass().getSimpleName() + "-render");
+		renderThread = renderer;
+		renderer.start();
+		try {
+			scheduler.run(this);
+		} finally {
+			renderThread = null;
+			running.set(false);
+			LockSupport.unpark(renderer);
+			try {
+				renderer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The body of the render thread: draw whenever update asks for a frame.
+	 */
+	private void renderLoop() {
+		long drawn = renderRequests.get();
+		try {
+			while (running.get()) {
+				long wanted = renderRequests.get();
+				if (wanted == drawn) {
+					LockSupport.parkNanos(scheduler.frameNanos());
+					continue;
+				}
+				drawn = wanted;
+				target.render();
+			}
+		} finally {
+			// If drawing crashed, stop the update thread too.
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Set up a fresh {@link Graphics2D} for a frame and hand it to
+	 * {@link #draw(Graphics2D, double)}. Shared by every {@link RenderTarget}.
+	 * 
+	 * @param g      The graphics for this frame.
+	 * @param width  The width of the frame in pixels.
+	 * @param height The height of the frame in pixels.
+	 */
+	void paintFrame(Graphics2D g, int width, int height) {
+		planFrame();
+		measuring = true;
+		final FrameRecorder r = recorder;
+		if (r == null) {
+			repaintFrom = null;
+			paintScaled(g, width, height);
+			return;
+		}
+		// The window can't be read back, so draw into the recorder's picture and
+		// copy that to the screen.
+		final BufferedImage canvas = r.getCanvas();
+		final Graphics2D cg = canvas.createGraphics();
+		try {
+			paintScaled(cg, canvas.getWidth(), canvas.getHeight());
+		} finally {
+			cg.dispose();
+		}
+		repaintFrom = canvas;
+		final long start = System.nanoTime();
+		g.drawImage(canvas, 0, 0, null);
+		r.capture();
+		metrics.add(FrameMetrics.Phase.PRESENT, System.nanoTime() - start);
+	}
+
+	/**
+	 * Draw the frame {@link #paintFrame} just drew again, because the buffer it
+	 * went to lost it. Nothing is decided, recorded or measured again: the
+	 * controllers see each frame once, and the time counts as presenting.
+	 * 
+	 * @param g      The graphics to draw to.
+	 * @param width  The width of the frame in pixels.
+	 * @param height The height of the frame in pixels.
+	 */
+	void repaintFrame(Graphics2D g, int width, int height) {
+		final long start = System.nanoTime();
+		final BufferedImage canvas = repaintFrom;
+		if (canvas != null) {
+			g.drawImage(canvas, 0, 0, null);
+		} else {
+			measuring = false;
+			paintScaled(g, width, height);
+		}
+		metrics.add(FrameMetrics.Phase.PRESENT, System.nanoTime() - start);
+	}
+
+	/**
+	 * Let the controllers pick the render scale and quality for a new frame.
+	 */
+	private void planFrame() {
+		// Only drawing gets faster at a lower scale or quality, so it has to fit
+		// in what update and present leave of the frame.
+		final long drawn = metrics.getLastDrawNanos();
+		final long others = metrics.getLastBusyNanos() - drawn;
+		final double fps = scheduler.getTargetFps();
+		final RenderScaleController c = renderScaleController;
+		if (c != null) {
+			frameScale = c.observe(drawn, others, fps);
+			frameMaxScale = c.getMax();
+		} else {
+			frameScale = renderScale;
+			frameMaxScale = frameScale;
+		}
+		final QualityController qc = qualityController;
+		frameQuality = qc != null ? qc.observe(drawn, others, fps) : quality;
+	}
+
+	/**
+	 * Draw a frame at the render scale, stretching it to fit if that is below 1.
+	 */
+	private void paintScaled(Graphics2D g, int width, int height) {
+		if (frameScale >= 1) {
+			if (renderScaleController == null) {
+				scaledFrame.release();
+			}
+			paintFrameTo(g, width, height);
+		} else {
+			scaledFrame.paint(g, width, height, frameScale, frameMaxScale, upscale, framePainter);
+		}
+	}
+
+	/**
+	 * The body of {@link #paintFrame}, at full resolution.
+	 */
+	private void paintFrameTo(Graphics2D g, int width, int height) {
+		frameQuality.apply(g);
+
+		final long start = System.nanoTime();
+		final Framebuffer fb = framebuffer;
+		if (fb == null) {
+			g.setColor(Color.black);
+			g.fillRect(0, 0, width, height);
+		} else {
+			g.drawImage(fb.getImage(), 0, 0, null);
+		}
+		final long cleared = System.nanoTime();
+		if (measuring) {
+			metrics.add(FrameMetrics.Phase.CLEAR, cleared - start);
+		}
+
+		final Layer[] stack = layers;
+		int i = 0;
+		for (; i < stack.length && stack[i].getZ() < 0; i++) {
+			stack[i].composite(g, width, height);
+		}
+		if (i < stack.length) {
+			// Keep draw's color, transform and clip away from the layers on top.
+			Graphics2D dg = (Graphics2D) g.create();
+			try {
+				draw(dg, scheduler.getAlpha());
+			} finally {
+				dg.dispose();
+			}
+		} else {
+			draw(g, scheduler.getAlpha());
+		}
+		for (; i < stack.length; i++) {
+			stack[i].composite(g, width, height);
+		}
+		if (measuring) {
+			metrics.add(FrameMetrics.Phase.DRAW, System.nanoTime() - cleared);
+			// If the scaled frame loses this and draws it again, don't count it twice.
+			measuring = false;
+		}
+
+		if (metricsOverlay) {
+			metrics.drawOverlay(g);
+		}
+	}
+
+	/**
+	 * Actually open the window (private method!)
+	 */
+	private void setupSwing() {
+		setupWindow(WindowConstants.EXIT_ON_CLOSE);
+	}
+
+	/**
+	 * Open the window.
+	 * 
+	 * @param closeOperation What closing it does, e.g.,
+	 *                       {@link WindowConstants#EXIT_ON_CLOSE}.
+	 */
+	void setupWindow(int closeOperation) {
+		synchronized (this) {
+			try {
+				SwingUtilities.invokeAndWait(() -> {
+					// Build the window which has one thing in it, our 'view' object.
+					frame = new JFrame(this.getClass().getSimpleName());
+					JPanel panel = new JPanel(new BorderLayout());
+					panel.add(view, BorderLayout.CENTER);
+					frame.setContentPane(panel);
+					frame.pack();
+					frame.setResizable(resizable);
+					view.setResizable(resizable);
+					frame.setDefaultCloseOperation(closeOperation);
+
+					// Connect event manager to Java's systems:
+					frame.addWindowListener(events);
+					frame.addKeyListener(events);
+					view.addMouseListener(events);
+					view.addMouseMotionListener(events);
+
+					frame.setVisible(true);
+					running.set(true);
+				});
+			} catch (InterruptedException | InvocationTargetException e) {
+				throw new RuntimeException("Couldn't start up GUI due to threading bug", e);
+			}
+
+		}
+	}
+
+	/**
+	 * Open the window and run your {@link #draw} method over and over!
+	 */
+	public final void start() {
+		this.setupSwing();
+
+		try {
+			runLoop();
+		} finally {
+			this.stop();
+			frame.setVisible(false);
+		}
+	}
+
+	/**
+	 * Close the window opened by {@link #setupWindow(int)}, if any.
+	 */
+	void closeWindow() {
+		final JFrame f;
+		synchronized (this) {
+			f = frame;
+		}
+		if (f != null) {
+			SwingUtilities.invokeLater(f::dispose);
+		}
+	}
+
+	/**
+	 * Attach to (or with null, detach from) a {@link GFXRuntime}.
+	 */
+	void setRuntime(GFXRuntime.Instance instance) {
+		this.runtime = instance;
+		view.setDeferPresent(instance != null);
+	}
+
+	/**
+	 * @return The {@link GFXRuntime} running this app, or null.
+	 */
+	GFXRuntime.Instance getRuntime() {
+		return runtime;
+	}
+
+	/**
+	 * Show a frame that {@link GFXRuntime} held back, if there is one.
+	 * 
+	 * @return true if one was shown.
+	 */
+	boolean presentDeferred() {
+		return target == view && view.presentPending();
+	}
+
+	/**
+	 * Switch drawing to an image in memory, instead of a window.
+	 */
+	void setupHeadless() {
+		synchronized (this) {
+			if (offscreen == null) {
+				offscreen = new OffscreenView(view.getWidth(), view.getHeight(), this);
+			}
+			target = offscreen;
+			running.set(true);
+		}
+	}
+
+	/**
+	 * Run your {@link #update} and {@link #draw} methods over and over like
+	 * {@link #start()}, but into an image in memory instead of a window. This
+	 * works without a display, e.g., with {@code -Djava.awt.headless=true}. Use
+	 * {@link #getFrameImage()} to see the results, and {@link #stop()} to finish.
+	 */
+	public final void startHeadless() {
+		this.setupHeadless();
+		try {
+			runLoop();
+		} finally {
+			this.stop();
+		}
+	}
+
+	/**
+	 * Run a number of frames into an image in memory, as fast as possible. This
+	 * is for rendering in batches, or measuring how fast drawing is. Each call to
+	 * {@link #update} pretends one frame at {@link FrameScheduler#getTargetFps()}
+	 * has passed, so results do not depend on how fast the computer is.
+	 * 
+	 * @param frames  How many frames to draw.
+	 * @param onFrame Called with the image after each frame, or null. The image
+	 *                is reused for the next frame, so copy it if you need to keep
+	 *                it.
+	 * @return How long it took, in nanoseconds.
+	 */
+	public final long runHeadless(int frames, Consumer<BufferedImage> onFrame) {
+		if (frames < 0) {
+			throw new IllegalArgumentException("frames must not be negative: " + frames);
+		}
+		this.setupHeadless();
+		final double dt = 1.0 / scheduler.getTargetFps();
+		final long start = System.nanoTime();
+		try {
+			for (int i = 0; i < frames && running.get(); i++) {
+				metrics.beginFrame(System.nanoTime());
+				deliverAsync();
+				stepUpdate(dt);
+				renderFrame();
+				if (onFrame != null) {
+					onFrame.accept(offscreen.getImage());
+				}
+			}
+		} finally {
+			running.set(false);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Get the most recent frame drawn by {@link #startHeadless()} or
+	 * {@link #runHeadless}.
+	 * 
+	 * @return The image (reused between frames), or null if we have not run
+	 *         headless.
+	 */
+	public final BufferedImage getFrameImage() {
+		OffscreenView off = offscreen;
+		return off == null ? null : off.getImage();
+	}
+
+	/**
+	 * Copy the pixels of the most recent headless frame, row by row, as 0xRRGGBB.
+	 * 
+	 * @param into An array to reuse, or null to make a new one.
+	 * @return The pixels, or null if we have not run headless.
+	 */
+	public final int[] getFramePixels(int[] into) {
+		OffscreenView off = offscreen;
+		if (off == null) {
+			return null;
+		}
+		int[] pixels = off.getPixels();
+		if (into == null || into.length < pixels.length) {
+			into = new int[pixels.length];
+		}
+		System.arraycopy(pixels, 0, into, 0, pixels.length);
+		return into;
+	}
+
+	/**
+	 * Start the window in the background.
+	 * You probably want {@link #start} instead.
+	 */
+	public final void startViewer() {
+		Thread already = null;
+		synchronized (this) {
+			already = this.updater.get();
+		}
+		if (already == null) {
+			GFX app = this;
+			this.setupSwing();
+			Thread updater = new Thread(app::start);
+			this.updater.set(updater);
+			updater.start();
+		}
+	}
+
+	/**
+	 * Change the title of your window.
+	 * 
+	 * @param title What to change the title to.
+	 */
+	public final synchronized void setTitle(String title) {
+		if (this.frame != null) {
+			this.frame.setTitle(title);
+		}
+	}
+
+	/**
+	 * Tell the window to close (e.g., if you want to make a game over
+	 * functionality)
+	 */
+	public final void stop() {
+		running.set(false);
+		Thread loop = loopThread;
+		if (loop != null) {
+			LockSupport.unpark(loop);
+		}
+		GFXRuntime.Instance rt = runtime;
+		if (rt != null) {
+			rt.wake();
+		}
+		Thread maybeUpdater = updater.getAndSet(null);
+		if (maybeUpdater != null) {
+			try {
+				maybeUpdater.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		stopRecording();
+		stopInputRecording();
+	}
+
+	/**
+	 * Optional method to override if you want to separate updates from drawing, or
+	 * to make time-perfect animations.
+	 * 
+	 * @param dt The time since we last called your update method, in seconds.
+	 */
+	public void update(double dt) {
+	}
+
+	/**
+	 * Override this method in order to draw your own animations.
+	 * 
+	 * @param g A standard Java {@link Graphics2D} object that can make a variety of
+	 *          shapes and colors.
+	 */
+	public abstract void draw(Graphics2D g);
+
+	/**
+	 * Override this method instead of {@link #draw(Graphics2D)} if you use
+	 * {@link FrameScheduler.Mode#FIXED} updates and want to blend between them.
+	 * 
+	 * @param g     The graphics to draw to.
+	 * @param alpha How far we are between the last update and the next one, from
+	 *              0 to 1; see {@link FrameScheduler#getAlpha()}.
+	 */
+	public void draw(Graphics2D g, double alpha) {
+		draw(g);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package me.jjfoley.gfx;
+
+/**
+ * One input event (a key or the mouse), as returned by
+ * {@link GFX#pollEvents(GFXEvent[])}.
+ * 
+ * These objects are meant to be reused: {@link GFX#pollEvents} copies into
+ * the ones you give it, so keep an array of them around instead of making new
+ * ones every frame.
+ * 
+ * @author jfoley
+ *
+ */
+public class GFXEvent {
+	/**
+	 * What kind of event is this?
+	 */
+	public enum Type {
+		/**
+		 * A key went down; see {@link GFXEvent#getKeyCode()}.
+		 */
+		KEY_PRESSED,
+		/**
+		 * A key came up; see {@link GFXEvent#getKeyCode()}.
+		 */
+		KEY_RELEASED,
+		/**
+		 * A character was typed; see {@link GFXEvent#getKeyChar()}.
+		 */
+		KEY_TYPED,
+		/**
+		 * A mouse button went down.
+		 */
+		MOUSE_PRESSED,
+		/**
+		 * A mouse button came up: this is what {@link GFX#processClick()} sees.
+		 */
+		MOUSE_RELEASED,
+		/**
+		 * The mouse moved with no buttons down.
+		 */
+		MOUSE_MOVED,
+		/**
+		 * The mouse moved with a button down.
+		 */
+		MOUSE_DRAGGED,
+		/**
+		 * The mouse came into the window.
+		 */
+		MOUSE_ENTERED,
+		/**
+		 * The mouse left the window.
+		 */
+		MOUSE_EXITED,
+	}
+
+	private Type type;
+	private long nanos;
+	private int x;
+	private int y;
+	private int keyCode;
+	private char keyChar;
+	private int button;
+	private int modifiers;
+	private int clickCount;
+
+	/**
+	 * Create an empty event, to be filled by {@link GFX#pollEvents}.
+	 */
+	public GFXEvent() {
+	}
+
+	/**
+	 * Fill in every field of this event.
+	 */
+	void set(Type type, long nanos, int x, int y, int keyCode, char keyChar, int button, int modifiers,
+			int clickCount) {
+		this.type = type;
+		this.nanos = nanos;
+		this.x = x;
+		this.y = y;
+		this.keyCode = keyCode;
+		this.keyChar = keyChar;
+		this.button = button;
+		this.modifiers = modifiers;
+		this.clickCount = clickCount;
+	}
+
+	/**
+	 * Copy every field from another event.
+	 * 
+	 * @param other The event to copy.
+	 */
+	public void copyFrom(GFXEvent other) {
+		set(other.type, other.nanos, other.x, other.y, other.keyCode, other.keyChar, other.button, other.modifiers,
+				other.clickCount);
+	}
+
+	/**
+	 * @return What kind of event this is.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return When the event arrived, as a {@link System#nanoTime()} value.
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return The x coordinate of the mouse, for mouse events.
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return The y coordinate of the mouse, for mouse events.
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return The keycode, e.g., {@link java.awt.event.KeyEvent#VK_SPACE}, for
+	 *         key events.
+	 */
+	public int getKeyCode() {
+		return keyCode;
+	}
+
+	/**
+	 * @return The character typed, for {@link Type#KEY_TYPED}.
+	 */
+	public char getKeyChar() {
+		return keyChar;
+	}
+
+	/**
+	 * @return Which mouse button, e.g., {@link java.awt.event.MouseEvent#BUTTON1},
+	 *         for mouse events.
+	 */
+	public int getButton() {
+		return button;
+	}
+
+	/**
+	 * @return The modifier keys and buttons that were down, e.g.,
+	 *         {@link java.awt.event.InputEvent#SHIFT_DOWN_MASK}.
+	 */
+	public int getModifiers() {
+		return modifiers;
+	}
+
+	/**
+	 * @return How many clicks in a row, for mouse button events.
+	 */
+	public int getClickCount() {
+		return clickCount;
+	}
+
+	/**
+	 * @return true if this is a key event.
+	 */
+	public boolean isKey() {
+		return type == Type.KEY_PRESSED || type == Type.KEY_RELEASED || type == Type.KEY_TYPED;
+	}
+
+	/**
+	 * @return true if this is a mouse event.
+	 */
+	public boolean isMouse() {
+		return type != null && !isKey();
+	}
+
+	/**
+	 * Print the type and details of this event.
+	 */
+	@Override
+	public String toString() {
+		if (isKey()) {
+			return type + "(code=" + keyCode + ",char=" + (int) keyChar + ",mods=" + modifiers + ")";
+		}
+		return type + "(" + x + "," + y + ",button=" + button + ",mods=" + modifiers + ")";
+	}
+}
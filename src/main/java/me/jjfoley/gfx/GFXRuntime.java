@@ -0,0 +1,549 @@
+package me.jjfoley.gfx;
+
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.WindowConstants;
+
+/**
+ * This class runs many GFX applications in one program without a thread for
+ * each. One scheduler thread keeps track of when each application's next frame
+ * is due, and a small pool of workers runs the frames. Frames that are due at
+ * about the same time are shown on the screen together, with one
+ * {@link Toolkit#sync()}.
+ * 
+ * <pre>
+ * {@code
+GFXRuntime runtime = new GFXRuntime();
+for (int i = 0; i < 20; i++) {
+	runtime.add(new MonitorView(i));
+}
+runtime.join(); // until every window is closed
+}
+ * </pre>
+ * 
+ * Each application keeps its own frame rate and update mode (see
+ * {@link GFX#getScheduler()}). When more frames are due than there are
+ * workers, ones with a higher priority go first. Each application is put
+ * back in line as soon as its own frame is done, so a slow one never holds up
+ * the others; only showing the frames waits, for at most
+ * {@link #PRESENT_WAIT_NANOS}. Pipelined drawing
+ * ({@link GFX#setPipelined(boolean)}) is ignored here: the workers are the
+ * extra threads.
+ * 
+ * @author jfoley
+ * 
+ */
+public class GFXRuntime {
+	/**
+	 * Frames due within this long of each other are run and shown together.
+	 */
+	private static final long COALESCE_NANOS = 2_000_000L;
+	/**
+	 * Once the first frame of a batch is done, wait at most this long for the
+	 * rest before showing the ones that are ready.
+	 */
+	static final long PRESENT_WAIT_NANOS = 2_000_000L;
+
+	private static final int PARKED = 0;
+	private static final int QUEUED = 1;
+	private static final int RUNNING = 2;
+	private static final int REMOVED = 3;
+
+	/**
+	 * One application run by a runtime.
+	 */
+	static final class Instance {
+		final GFXRuntime runtime;
+		final GFX app;
+		final boolean windowed;
+		volatile int priority;
+		/**
+		 * {@link #PARKED}, {@link #QUEUED}, {@link #RUNNING} or {@link #REMOVED}.
+		 */
+		final AtomicInteger state = new AtomicInteger(QUEUED);
+		/**
+		 * When the next frame is due; guarded by the runtime.
+		 */
+		long deadline;
+		/**
+		 * When the last frame finished, or when it went to sleep.
+		 */
+		long idleSince;
+		boolean started;
+		boolean parked;
+		/**
+		 * What the last frame decided: the next deadline, or {@link #PARK}.
+		 */
+		long next;
+		final AtomicLong cpuNanos = new AtomicLong();
+		final AtomicLong busyNanos = new AtomicLong();
+		final AtomicLong frames = new AtomicLong();
+
+		Instance(GFXRuntime runtime, GFX app, boolean windowed, int priority) {
+			this.runtime = runtime;
+			this.app = app;
+			this.windowed = windowed;
+			this.priority = priority;
+		}
+
+		/**
+		 * Something changed: run a frame soon if we are asleep.
+		 */
+		void wake() {
+			if (state.compareAndSet(PARKED, QUEUED)) {
+				runtime.enqueue(this, System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * Frames started together, to be shown together.
+	 */
+	private final class Batch {
+		final Instance[] members;
+		final AtomicInteger remaining;
+		/**
+		 * When to show whatever is ready, even if some frames are still running;
+		 * set when the first one is done.
+		 */
+		volatile long presentBy = Long.MAX_VALUE;
+		final AtomicBoolean shown = new AtomicBoolean();
+
+		Batch(List<Instance> due) {
+			this.members = due.toArray(new Instance[0]);
+			this.remaining = new AtomicInteger(members.length);
+		}
+
+		/**
+		 * Called by each worker when its frame is done: show the batch if it was
+		 * the last one, and put it back in line right away either way.
+		 */
+		void finished(Instance inst) {
+			final int left = remaining.decrementAndGet();
+			if (left == 0) {
+				show();
+			} else if (shown.get()) {
+				// Too slow for the rest of the batch; show this one alone.
+				if (inst.app.presentDeferred()) {
+					sync();
+				}
+			} else if (left == members.length - 1) {
+				presentBy = System.nanoTime() + PRESENT_WAIT_NANOS;
+				LockSupport.unpark(scheduler);
+			}
+			reschedule(inst);
+		}
+
+		/**
+		 * Show every frame that is ready, with one sync. Only the first call does
+		 * anything.
+		 */
+		void show() {
+			if (!shown.compareAndSet(false, true)) {
+				return;
+			}
+			boolean any = false;
+			for (Instance inst : members) {
+				if (inst.app.presentDeferred()) {
+					any = true;
+				}
+			}
+			if (any) {
+				sync();
+			}
+		}
+	}
+
+	/**
+	 * {@link Instance#next} when it should sleep until woken.
+	 */
+	private static final long PARK = Long.MIN_VALUE;
+	/**
+	 * {@link Instance#next} when it stopped.
+	 */
+	private static final long STOPPED = Long.MAX_VALUE;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+	private final PriorityQueue<Instance> queue = new PriorityQueue<>(
+			Comparator.comparingLong((Instance i) -> i.deadline));
+	private final List<Instance> instances = new CopyOnWriteArrayList<>();
+	private final ExecutorService workers;
+	private final Thread scheduler;
+	private volatile boolean shutdown;
+	private final AtomicLong presents = new AtomicLong();
+
+	/**
+	 * Create a runtime with a worker per core, up to 4 (at least 1).
+	 */
+	public GFXRuntime() {
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+	}
+
+	/**
+	 * Create a runtime.
+	 * 
+	 * @param workers How many frames can run at once.
+	 */
+	public GFXRuntime(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("workers must be at least 1: " + workers);
+		}
+		AtomicInteger count = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r, "GFXRuntime-worker-" + count.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		});
+		this.scheduler = new Thread(this::schedule, "GFXRuntime-scheduler");
+		this.scheduler.setDaemon(true);
+		this.scheduler.start();
+	}
+
+	/**
+	 * Open a window for an application and start running it, with priority 0.
+	 * Closing the window stops just that application.
+	 * 
+	 * @param app The application; not started yet.
+	 */
+	public void add(GFX app) {
+		add(app, 0);
+	}
+
+	/**
+	 * Open a window for an application and start running it.
+	 * 
+	 * @param app      The application; not started yet.
+	 * @param priority Higher runs first when frames are due at the same time.
+	 */
+	public void add(GFX app, int priority) {
+		attach(app, true, priority);
+	}
+
+	/**
+	 * Start running an application into an image in memory, like
+	 * {@link GFX#startHeadless()}, with priority 0.
+	 * 
+	 * @param app The application; not started yet.
+	 */
+	public void addHeadless(GFX app) {
+		attach(app, false, 0);
+	}
+
+	/**
+	 * Start running an application into an image in memory.
+	 * 
+	 * @param app      The application; not started yet.
+	 * @param priority Higher runs first when frames are due at the same time.
+	 */
+	public void addHeadless(GFX app, int priority) {
+		attach(app, false, priority);
+	}
+
+	private void attach(GFX app, boolean windowed, int priority) {
+		if (shutdown) {
+			throw new IllegalStateException("This runtime has been shut down.");
+		}
+		synchronized (app) {
+			Instance before = app.getRuntime();
+			if (app.isRunning() || (before != null && before.state.get() != REMOVED)) {
+				throw new IllegalStateException("Already running: " + app);
+			}
+			Instance inst = new Instance(this, app, windowed, priority);
+			app.setRuntime(inst);
+			if (windowed) {
+				app.setupWindow(WindowConstants.DISPOSE_ON_CLOSE);
+			} else {
+				app.setupHeadless();
+			}
+			instances.add(inst);
+			enqueue(inst, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Change how important an application is.
+	 * 
+	 * @param app      An application added to this runtime.
+	 * @param priority Higher runs first when frames are due at the same time.
+	 */
+	public void setPriority(GFX app, int priority) {
+		find(app).priority = priority;
+	}
+
+	/**
+	 * @param app An application added to this runtime.
+	 * @return Its priority.
+	 */
+	public int getPriority(GFX app) {
+		return find(app).priority;
+	}
+
+	/**
+	 * @param app An application added to this runtime (it may have stopped).
+	 * @return The CPU time its frames have used, in nanoseconds. If the JVM
+	 *         can't measure CPU time, this is the time they took instead.
+	 */
+	public long getCpuNanos(GFX app) {
+		return find(app).cpuNanos.get();
+	}
+
+	/**
+	 * @param app An application added to this runtime.
+	 * @return How long its frames have taken, in nanoseconds.
+	 */
+	public long getBusyNanos(GFX app) {
+		return find(app).busyNanos.get();
+	}
+
+	/**
+	 * @param app An application added to this runtime.
+	 * @return How many frames it has run.
+	 */
+	public long getFrames(GFX app) {
+		return find(app).frames.get();
+	}
+
+	/**
+	 * @return How many applications are running.
+	 */
+	public int size() {
+		return instances.size();
+	}
+
+	/**
+	 * @return How many times a group of windows was shown together.
+	 */
+	public long getPresents() {
+		return presents.get();
+	}
+
+	private Instance find(GFX app) {
+		Instance inst = app.getRuntime();
+		if (inst == null || inst.runtime != this) {
+			throw new IllegalArgumentException("Not running in this runtime: " + app);
+		}
+		return inst;
+	}
+
+	/**
+	 * Wait until every application has stopped.
+	 * 
+	 * @throws InterruptedException if this thread is interrupted while waiting.
+	 */
+	public void join() throws InterruptedException {
+		synchronized (instances) {
+			while (!instances.isEmpty()) {
+				instances.wait();
+			}
+		}
+	}
+
+	/**
+	 * Stop every application, and the runtime's threads.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (Instance inst : instances) {
+			inst.app.stop();
+		}
+		LockSupport.unpark(scheduler);
+		workers.shutdown();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Instance inst : instances) {
+			remove(inst);
+		}
+	}
+
+	/**
+	 * Put an instance in line for a frame at a deadline.
+	 */
+	private void enqueue(Instance inst, long deadline) {
+		boolean first;
+		synchronized (queue) {
+			inst.deadline = deadline;
+			queue.add(inst);
+			first = queue.peek() == inst;
+		}
+		if (first) {
+			LockSupport.unpark(scheduler);
+		}
+	}
+
+	/**
+	 * The body of the scheduler thread: hand out frames as they come due, and
+	 * show batches that waited long enough for their slow members.
+	 */
+	private void schedule() {
+		final List<Instance> due = new ArrayList<>();
+		final ArrayDeque<Batch> open = new ArrayDeque<>();
+		final Comparator<Instance> byPriority = Comparator.comparingInt((Instance i) -> -i.priority);
+		while (!shutdown) {
+			final long now = System.nanoTime();
+			long wait = -1;
+			for (int i = open.size(); i > 0; i--) {
+				Batch b = open.poll();
+				if (b.shown.get()) {
+					continue;
+				}
+				final long left = b.presentBy - now;
+				if (left <= 0) {
+					b.show();
+					continue;
+				}
+				if (b.presentBy != Long.MAX_VALUE && (wait < 0 || left < wait)) {
+					wait = left;
+				}
+				open.add(b);
+			}
+			synchronized (queue) {
+				while (!queue.isEmpty() && queue.peek().deadline <= now + COALESCE_NANOS) {
+					due.add(queue.poll());
+				}
+				if (!queue.isEmpty()) {
+					final long left = queue.peek().deadline - now;
+					if (wait < 0 || left < wait) {
+						wait = left;
+					}
+				}
+			}
+			if (due.isEmpty()) {
+				if (wait < 0) {
+					LockSupport.park(this);
+				} else {
+					LockSupport.parkNanos(this, wait);
+				}
+				continue;
+			}
+			due.sort(byPriority);
+			Batch batch = new Batch(due);
+			open.add(batch);
+			for (Instance inst : batch.members) {
+				inst.state.set(RUNNING);
+				try {
+					if (shutdown) {
+						throw new RejectedExecutionException("shut down");
+					}
+					workers.execute(() -> runFrame(inst, batch));
+				} catch (RejectedExecutionException e) {
+					// shutdown() got here first: this frame will never run.
+					inst.next = STOPPED;
+					batch.finished(inst);
+				}
+			}
+			due.clear();
+		}
+	}
+
+	/**
+	 * Run one frame of one application, on a worker.
+	 */
+	private void runFrame(Instance inst, Batch batch) {
+		final GFX app = inst.app;
+		final long cpu = CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+		final long start = System.nanoTime();
+		try {
+			if (!app.isRunning() || shutdown) {
+				inst.next = STOPPED;
+				return;
+			}
+			// The last frame may still be waiting for its batch; show it before
+			// drawing over it.
+			if (app.presentDeferred()) {
+				sync();
+			}
+			final FrameScheduler frames = app.getScheduler();
+			if (!inst.started) {
+				inst.started = true;
+				frames.begin(start);
+			} else if (inst.parked) {
+				frames.wake(app, inst.idleSince, start);
+			} else {
+				app.getMetrics().add(FrameMetrics.Phase.IDLE, start - inst.idleSince);
+			}
+			inst.parked = false;
+			if (frames.isIdle(app)) {
+				inst.parked = true;
+				inst.next = PARK;
+			} else {
+				app.beforeFrame();
+				inst.next = frames.frame(app);
+				inst.frames.incrementAndGet();
+			}
+		} catch (RuntimeException | Error e) {
+			// Like a crash in start(): this app stops, the others keep going.
+			app.stop();
+			inst.next = STOPPED;
+			Thread t = Thread.currentThread();
+			t.getUncaughtExceptionHandler().uncaughtException(t, e);
+		} finally {
+			final long end = System.nanoTime();
+			inst.idleSince = end;
+			inst.busyNanos.addAndGet(end - start);
+			inst.cpuNanos.addAndGet(CPU_TIME ? THREADS.getCurrentThreadCpuTime() - cpu : end - start);
+			batch.finished(inst);
+		}
+	}
+
+	/**
+	 * Push the frames just shown to the screen.
+	 */
+	private void sync() {
+		Toolkit.getDefaultToolkit().sync();
+		presents.incrementAndGet();
+	}
+
+	/**
+	 * After a frame: put its instance back in line, to sleep, or away.
+	 */
+	private void reschedule(Instance inst) {
+		final long next = inst.next;
+		if (next == STOPPED || shutdown) {
+			remove(inst);
+		} else if (next == PARK) {
+			inst.state.set(PARKED);
+			// A request may have come in before we were parked.
+			if (inst.app.isRedrawRequested() || !inst.app.isRunning()) {
+				inst.wake();
+			}
+		} else {
+			inst.state.set(QUEUED);
+			enqueue(inst, next);
+		}
+	}
+
+	private void remove(Instance inst) {
+		if (inst.state.getAndSet(REMOVED) == REMOVED) {
+			return;
+		}
+		inst.app.stop();
+		if (inst.windowed) {
+			inst.app.closeWindow();
+		}
+		synchronized (instances) {
+			instances.remove(inst);
+			instances.notifyAll();
+		}
+	}
+}
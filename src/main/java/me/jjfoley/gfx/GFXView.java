@@ -1,20 +1,28 @@
 package me.jjfoley.gfx;
 
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
 import java.awt.Canvas;
-import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
 import java.awt.image.BufferStrategy;
 
 /**
  * This class wraps a {@link Canvas} so that we can draw to it.
  */
-class GFXView extends Canvas {
+class GFXView extends Canvas implements RenderTarget {
 	/**
 	 * Ignore warnings from Eclipse, since all Swing things must be serializable.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * How many times to draw a frame again after losing it, before waiting for
+	 * the next frame.
+	 */
+	private static final int MAX_ATTEMPTS = 3;
 	/**
 	 * What application are we rendering?
 	 */
@@ -23,6 +31,40 @@ class GFXView extends Canvas {
 	 * How big are we? -- the application determines this.
 	 */
 	protected Dimension size;
+	/**
+	 * When true, {@link #render()} leaves the frame for {@link #presentPending()}
+	 * to show, so a {@link GFXRuntime} can show many windows at once.
+	 */
+	private volatile boolean deferPresent;
+	/**
+	 * A finished frame waiting for {@link #presentPending()}.
+	 */
+	private volatile boolean pending;
+	/**
+	 * Held while showing a pending frame, since a {@link GFXRuntime} can show it
+	 * from one thread while the next frame starts on another.
+	 */
+	private final Object presentLock = new Object();
+	/**
+	 * How frames are put on the screen; see {@link GFX#setPresentation}.
+	 */
+	private volatile PresentMode mode = PresentMode.AUTO;
+	/**
+	 * How many buffers to use, including the screen.
+	 */
+	private volatile int buffers = 2;
+	/**
+	 * Set when the settings change, so {@link #strategy()} makes new buffers.
+	 */
+	private volatile boolean rebuild;
+	/**
+	 * Call {@link Toolkit#sync()} after showing each frame?
+	 */
+	private volatile boolean sync;
+	/**
+	 * Counters for {@link GFX#getPresentStats()}.
+	 */
+	private final PresentStats stats = new PresentStats();
 
 	/**
 	 * Construct a new view of a particular size for an app.
@@ -42,7 +84,7 @@ class GFXView extends Canvas {
 	 * {@linkplain #setMinimumSize(Dimension)}, and
 	 * {@linkplain #setMaximumSize(Dimension)}. This prevents resizing and getting a
 	 * window that's too big or small.
-	 *
+	 * 
 	 * @param width  - the pixel width of the window.
 	 * @param height - the pixel height of the window.
 	 */
@@ -55,28 +97,202 @@ class GFXView extends Canvas {
 	}
 
 	/**
-	 * This method actually updates the graphics on this canvas, using a
-	 * {@linkplain BufferStrategy} and provides a
-	 * {@linkplain java.awt.Graphics2D} object to {@linkplain GFX#draw}.
+	 * Let the window (and so this canvas) be resized, or lock it back to the size
+	 * the application asked for.
+	 * 
+	 * @param resizable true to allow resizing.
 	 */
-	public void render() {
+	void setResizable(boolean resizable) {
+		if (resizable) {
+			this.setMinimumSize(new Dimension(1, 1));
+			this.setMaximumSize(new Dimension(Short.MAX_VALUE, Short.MAX_VALUE));
+		} else {
+			this.defineSize(size.width, size.height);
+		}
+	}
+
+	/**
+	 * Java calls this when the window was covered up or resized. We never draw
+	 * here, since frames come from the {@link FrameScheduler}; we only make sure
+	 * one is coming (it matters with {@link GFX#setRenderOnDemand(boolean)}).
+	 */
+	@Override
+	public void paint(Graphics g) {
+		app.requestRedraw();
+	}
+
+	/**
+	 * Same as {@link #paint(Graphics)}: skip clearing the canvas.
+	 */
+	@Override
+	public void update(Graphics g) {
+		app.requestRedraw();
+	}
+
+	/**
+	 * Make the buffers with the current settings the next time we draw.
+	 * 
+	 * @param mode    How frames are put on the screen.
+	 * @param buffers How many buffers to use, including the screen.
+	 */
+	void setPresentation(PresentMode mode, int buffers) {
+		this.mode = mode;
+		this.buffers = buffers;
+		this.rebuild = true;
+	}
+
+	/**
+	 * @param sync true to call {@link Toolkit#sync()} after each frame is shown.
+	 */
+	void setToolkitSync(boolean sync) {
+		this.sync = sync;
+	}
+
+	/**
+	 * @return The counters for putting frames on the screen.
+	 */
+	PresentStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Get our {@linkplain BufferStrategy}, making it if needed.
+	 */
+	private BufferStrategy strategy() {
 		BufferStrategy bs = getBufferStrategy();
-		if (bs == null) {
-			createBufferStrategy(2);
+		if (bs == null || rebuild) {
+			rebuild = false;
+			final int n = buffers;
+			final PresentMode m = mode;
+			if (m == PresentMode.AUTO) {
+				createBufferStrategy(n);
+			} else {
+				try {
+					createBufferStrategy(n, new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true),
+							m == PresentMode.FLIP ? BufferCapabilities.FlipContents.UNDEFINED : null));
+				} catch (AWTException e) {
+					// FLIP falls back to whatever works; BLIT to blitting from memory.
+					if (m == PresentMode.FLIP) {
+						createBufferStrategy(n);
+					} else {
+						try {
+							createBufferStrategy(n,
+									new BufferCapabilities(new ImageCapabilities(false), new ImageCapabilities(false), null));
+						} catch (AWTException never) {
+							createBufferStrategy(n);
+						}
+					}
+				}
+			}
 			bs = getBufferStrategy();
+			stats.created(n, bs.getCapabilities().isPageFlipping());
 		}
+		return bs;
+	}
 
-		Graphics2D g = (Graphics2D) bs.getDrawGraphics();
-		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	/**
+	 * This method actually updates the graphics on this canvas, using a
+	 * {@linkplain BufferStrategy} and provides a
+	 * {@linkplain java.awt.Graphics2D} object to {@linkplain GFX#draw}. If the
+	 * buffers lose their contents on the way, the frame is drawn again with
+	 * {@link GFX#repaintFrame}, which skips the once-per-frame work.
+	 */
+	@Override
+	public void render() {
+		final BufferStrategy bs = strategy();
+		int attempts = 0;
+		while (true) {
+			// Draw until the back buffer keeps what we drew.
+			while (true) {
+				Graphics2D g = (Graphics2D) bs.getDrawGraphics();
+				try {
+					if (attempts == 0) {
+						app.paintFrame(g, getWidth(), getHeight());
+					} else {
+						app.repaintFrame(g, getWidth(), getHeight());
+					}
+				} finally {
+					g.dispose();
+				}
+				if (!bs.contentsRestored()) {
+					break;
+				}
+				stats.restored();
+				if (!retry(++attempts)) {
+					break;
+				}
+			}
 
-		g.setColor(Color.black);
-		g.fillRect(0, 0, getWidth(), getHeight());
+			if (deferPresent) {
+				pending = true;
+				return;
+			}
+			final long start = System.nanoTime();
+			bs.show();
+			if (sync) {
+				Toolkit.getDefaultToolkit().sync();
+			}
+			app.getMetrics().add(FrameMetrics.Phase.PRESENT, System.nanoTime() - start);
+			if (!bs.contentsLost()) {
+				stats.present();
+				return;
+			}
+			stats.lost();
+			if (!retry(++attempts)) {
+				// Probably minimized or locked; try again next frame.
+				app.requestRedraw();
+				return;
+			}
+		}
+	}
 
-		app.draw(g);
+	/**
+	 * Decide whether to draw a lost frame again.
+	 * 
+	 * @param attempts How many times it has been lost so far.
+	 * @return true to draw again; false to give up on this frame.
+	 */
+	private boolean retry(int attempts) {
+		if (attempts > MAX_ATTEMPTS) {
+			return false;
+		}
+		stats.redraw();
+		return true;
+	}
 
-		g.dispose();
-		bs.show();
+	/**
+	 * @param defer true to keep finished frames until {@link #presentPending()}.
+	 */
+	void setDeferPresent(boolean defer) {
+		this.deferPresent = defer;
+	}
+
+	/**
+	 * Show the frame {@link #render()} left behind, if there is one.
+	 * 
+	 * @return true if a frame was shown.
+	 */
+	boolean presentPending() {
+		synchronized (presentLock) {
+			if (!pending) {
+				return false;
+			}
+			pending = false;
+			final long start = System.nanoTime();
+			BufferStrategy bs = getBufferStrategy();
+			if (bs != null) {
+				bs.show();
+				if (bs.contentsLost()) {
+					// Too late to draw it again here; ask for another frame.
+					stats.lost();
+					app.requestRedraw();
+				} else {
+					stats.present();
+				}
+			}
+			app.getMetrics().add(FrameMetrics.Phase.PRESENT, System.nanoTime() - start);
+			return true;
+		}
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,424 @@
+package me.jjfoley.gfx;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.VolatileImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class loads images, converts them to a format that is fast to draw, and
+ * remembers them so each file is only read once. Get it from
+ * {@link GFX#getAssets()}.
+ * 
+ * <pre>
+ * {@code
+public void draw(Graphics2D g) {
+	getAssets().draw(g, "sprites/player.png", x, y);
+}
+}
+ * </pre>
+ * 
+ * The cache has a memory budget: when the images add up to more bytes than
+ * that, the least recently used ones are forgotten (and loaded again if they
+ * are needed later).
+ * 
+ * @author jfoley
+ * 
+ */
+public class ImageAssets {
+	/**
+	 * The default memory budget: 64 megabytes.
+	 */
+	public static final long DEFAULT_BUDGET = 64L << 20;
+
+	/**
+	 * One cached image.
+	 */
+	private static final class Entry {
+		final BufferedImage image;
+		final long bytes;
+		/**
+		 * A copy of {@link #image} in video memory, or null. Only touched while
+		 * drawing.
+		 */
+		VolatileImage accelerated;
+		/**
+		 * Set once the entry has been evicted or removed; after that it must not
+		 * get a video memory copy, since nothing would give it back.
+		 */
+		boolean released;
+
+		Entry(BufferedImage image) {
+			this.image = image;
+			this.bytes = bytesOf(image);
+		}
+
+		long volatileBytes() {
+			return 4L * image.getWidth() * image.getHeight();
+		}
+
+		long totalBytes() {
+			return accelerated == null ? bytes : bytes + volatileBytes();
+		}
+	}
+
+	/**
+	 * Every cached image, least recently used first.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long budget = DEFAULT_BUDGET;
+	private long resident;
+	private volatile boolean useVolatile = false;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long restores;
+
+	/**
+	 * Create an empty cache; use {@link GFX#getAssets()} instead.
+	 */
+	ImageAssets() {
+	}
+
+	/**
+	 * Get an image, loading it the first time. The name is looked up on the
+	 * classpath first (e.g., inside your jar), then as a file.
+	 * 
+	 * @param name The path to the image, e.g., "images/tree.png".
+	 * @return The image, converted to a format that is fast to draw. Do not
+	 *         change its pixels: it is shared.
+	 */
+	public BufferedImage get(String name) {
+		return entry(name).image;
+	}
+
+	/**
+	 * Load an image now, so drawing it later does not have to wait for the disk.
+	 * 
+	 * @param name The path to the image.
+	 */
+	public void preload(String name) {
+		entry(name);
+	}
+
+	/**
+	 * Draw an image with its top-left corner at (x, y). If
+	 * {@link #setUseVolatile(boolean)} is on, this draws from a copy in video
+	 * memory, and quietly copies it there again if the computer threw it away.
+	 * 
+	 * @param g    The graphics to draw to.
+	 * @param name The path to the image.
+	 * @param x    Where the left edge goes.
+	 * @param y    Where the top edge goes.
+	 */
+	public void draw(Graphics2D g, String name, int x, int y) {
+		Entry e = entry(name);
+		if (!useVolatile) {
+			g.drawImage(e.image, x, y, null);
+			return;
+		}
+		VolatileImage accelerated;
+		synchronized (this) {
+			accelerated = validate(e, g.getDeviceConfiguration());
+		}
+		if (accelerated == null) {
+			g.drawImage(e.image, x, y, null);
+			return;
+		}
+		g.drawImage(accelerated, x, y, null);
+		if (accelerated.contentsLost()) {
+			// Lost while drawing: the next draw restores it; use the original now.
+			g.drawImage(e.image, x, y, null);
+		}
+	}
+
+	/**
+	 * Make sure an entry's video memory copy exists and holds the picture.
+	 * 
+	 * @return The copy, or null if we could not make one (or the entry was
+	 *         forgotten since we found it).
+	 */
+	private VolatileImage validate(Entry e, GraphicsConfiguration gc) {
+		if (e.released) {
+			return null;
+		}
+		VolatileImage vi = e.accelerated;
+		int state = vi == null ? VolatileImage.IMAGE_INCOMPATIBLE : vi.validate(gc);
+		if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+			if (vi != null) {
+				resident -= e.volatileBytes();
+				vi.flush();
+				e.accelerated = null;
+			}
+			try {
+				vi = gc.createCompatibleVolatileImage(e.image.getWidth(), e.image.getHeight(),
+						e.image.getTransparency());
+			} catch (RuntimeException | Error unsupported) {
+				return null;
+			}
+			e.accelerated = vi;
+			resident += e.volatileBytes();
+			evict(e);
+			state = VolatileImage.IMAGE_RESTORED;
+		}
+		if (state == VolatileImage.IMAGE_RESTORED) {
+			restores++;
+			Graphics2D vg = vi.createGraphics();
+			try {
+				vg.setComposite(AlphaComposite.Src);
+				vg.drawImage(e.image, 0, 0, null);
+			} finally {
+				vg.dispose();
+			}
+		}
+		return vi;
+	}
+
+	/**
+	 * Forget one image.
+	 * 
+	 * @param name The path to the image.
+	 * @return true if it was cached.
+	 */
+	public synchronized boolean remove(String name) {
+		Entry e = entries.remove(name);
+		if (e == null) {
+			return false;
+		}
+		release(e);
+		return true;
+	}
+
+	/**
+	 * Forget every image.
+	 */
+	public synchronized void clear() {
+		for (Entry e : entries.values()) {
+			release(e);
+		}
+		entries.clear();
+	}
+
+	/**
+	 * @return The memory budget, in bytes.
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Change the memory budget. Images are forgotten right away if we are now
+	 * over it.
+	 * 
+	 * @param bytes How many bytes of images to keep.
+	 */
+	public synchronized void setBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("bytes must not be negative: " + bytes);
+		}
+		this.budget = bytes;
+		evict(null);
+	}
+
+	/**
+	 * @return true if {@link #draw} uses copies in video memory.
+	 */
+	public boolean isUseVolatile() {
+		return useVolatile;
+	}
+
+	/**
+	 * Choose whether {@link #draw} keeps a copy of each image in video memory
+	 * ({@link VolatileImage}). This can make drawing faster on some computers;
+	 * the copies count toward the budget.
+	 * 
+	 * @param useVolatile true to use video memory.
+	 */
+	public void setUseVolatile(boolean useVolatile) {
+		this.useVolatile = useVolatile;
+	}
+
+	/**
+	 * @return How many images are cached right now.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return How many bytes the cached images take up.
+	 */
+	public synchronized long getResidentBytes() {
+		return resident;
+	}
+
+	/**
+	 * @return How many times an image was already cached.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return How many times an image had to be loaded.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return How many images were forgotten to stay under the budget.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return How many times a video memory copy was made or put back.
+	 */
+	public synchronized long getRestores() {
+		return restores;
+	}
+
+	/**
+	 * Find an entry, loading it if needed. Loading happens outside of the lock.
+	 */
+	private Entry entry(String name) {
+		synchronized (this) {
+			Entry e = entries.get(name);
+			if (e != null) {
+				hits++;
+				return e;
+			}
+			misses++;
+		}
+		Entry loaded = new Entry(toCompatible(read(name)));
+		synchronized (this) {
+			Entry raced = entries.get(name);
+			if (raced != null) {
+				return raced;
+			}
+			entries.put(name, loaded);
+			resident += loaded.totalBytes();
+			evict(loaded);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Forget the least recently used images until we fit in the budget.
+	 * 
+	 * @param keep An entry not to forget (the one just loaded), or null.
+	 */
+	private void evict(Entry keep) {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (resident > budget && it.hasNext()) {
+			Entry e = it.next().getValue();
+			if (e == keep) {
+				continue;
+			}
+			it.remove();
+			release(e);
+			evictions++;
+		}
+	}
+
+	private void release(Entry e) {
+		e.released = true;
+		resident -= e.totalBytes();
+		if (e.accelerated != null) {
+			e.accelerated.flush();
+			e.accelerated = null;
+		}
+	}
+
+	/**
+	 * Read an image from the classpath or from a file.
+	 */
+	private static BufferedImage read(String name) {
+		try {
+			URL url = ImageAssets.class.getClassLoader().getResource(name);
+			BufferedImage image = url != null ? ImageIO.read(url) : ImageIO.read(new File(name));
+			if (image == null) {
+				throw new IOException("Not an image we can read: " + name);
+			}
+			return image;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Couldn't load image: " + name, e);
+		}
+	}
+
+	/**
+	 * Convert an image to the format of the screen, or, without a screen, to
+	 * the packed integer format Java draws fastest.
+	 * 
+	 * @param image An image, in any format.
+	 * @return The same picture, maybe a new image.
+	 */
+	static BufferedImage toCompatible(BufferedImage image) {
+		int transparency = image.getColorModel().getTransparency();
+		BufferedImage converted;
+		if (GraphicsEnvironment.isHeadless()) {
+			int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB
+					: BufferedImage.TYPE_INT_ARGB_PRE;
+			if (image.getType() == type) {
+				return image;
+			}
+			converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+		} else {
+			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration();
+			if (image.getColorModel().equals(gc.getColorModel(transparency))) {
+				return image;
+			}
+			converted = gc.createCompatibleImage(image.getWidth(), image.getHeight(), transparency);
+		}
+		Graphics2D g = converted.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(image, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return converted;
+	}
+
+	/**
+	 * Make an empty, see-through image in the format of the screen, or, without
+	 * a screen, in the packed integer format Java draws fastest.
+	 * 
+	 * @param width  The width in pixels.
+	 * @param height The height in pixels.
+	 * @return A new image, all transparent.
+	 */
+	static BufferedImage createCompatible(int width, int height) {
+		if (GraphicsEnvironment.isHeadless()) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+		GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration();
+		return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+
+	/**
+	 * @return About how much memory an image takes.
+	 */
+	private static long bytesOf(BufferedImage image) {
+		DataBuffer data = image.getRaster().getDataBuffer();
+		return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+	}
+}
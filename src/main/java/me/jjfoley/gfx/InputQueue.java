@@ -0,0 +1,162 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded ring of input events, filled by the thread receiving events from
+ * Java (one producer at a time) and emptied by the thread running frames. It
+ * never locks and never creates objects after it is built: events are copied
+ * in and out of preallocated {@link GFXEvent} slots.
+ * 
+ * @author jfoley
+ *
+ */
+public class InputQueue {
+	/**
+	 * What happens when an event arrives and the queue is full?
+	 */
+	public enum Overflow {
+		/**
+		 * Throw the oldest event away to make room.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Throw the new event away.
+		 */
+		DROP_NEWEST,
+	}
+
+	/**
+	 * The default number of events we hold.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final GFXEvent[] slots;
+	private final int mask;
+	/**
+	 * The next event to read; the consumer (or a producer dropping the oldest)
+	 * moves it forward.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	/**
+	 * The next slot to write; only the producer moves it forward.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile Overflow overflow = Overflow.DROP_OLDEST;
+
+	/**
+	 * Create a queue.
+	 * 
+	 * @param capacity How many events to hold; rounded up to a power of two.
+	 */
+	InputQueue(int capacity) {
+		if (capacity < 1 || capacity > (1 << 24)) {
+			throw new IllegalArgumentException("capacity out of range: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new GFXEvent[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new GFXEvent();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @return How many events this queue can hold.
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * @return How many events are waiting right now.
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * @return How many events were thrown away because the queue was full.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return What we do when full.
+	 */
+	public Overflow getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * @param overflow What to do when full, see {@link Overflow}.
+	 */
+	public void setOverflow(Overflow overflow) {
+		if (overflow == null) {
+			throw new IllegalArgumentException("overflow cannot be null");
+		}
+		this.overflow = overflow;
+	}
+
+	/**
+	 * Add an event. Only one thread at a time may call this.
+	 * 
+	 * @return false if the event was thrown away.
+	 */
+	boolean offer(GFXEvent.Type type, long nanos, int x, int y, int keyCode, char keyChar, int button, int modifiers,
+			int clickCount) {
+		final long t = tail.get();
+		final long h = head.get();
+		if (t - h >= slots.length) {
+			if (overflow == Overflow.DROP_NEWEST) {
+				dropped.incrementAndGet();
+				return false;
+			}
+			// If this fails, the consumer just took the oldest and there is room.
+			if (head.compareAndSet(h, h + 1)) {
+				dropped.incrementAndGet();
+			}
+		}
+		slots[(int) (t & mask)].set(type, nanos, x, y, keyCode, keyChar, button, modifiers, clickCount);
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Take the oldest event.
+	 * 
+	 * @param into Where to copy it.
+	 * @return false if there were no events.
+	 */
+	boolean poll(GFXEvent into) {
+		while (true) {
+			final long h = head.get();
+			if (h >= tail.get()) {
+				return false;
+			}
+			into.copyFrom(slots[(int) (h & mask)]);
+			if (head.compareAndSet(h, h + 1)) {
+				return true;
+			}
+			// The producer dropped this event while we copied it; try the next.
+		}
+	}
+
+	/**
+	 * Throw away every waiting event.
+	 */
+	void clear() {
+		while (true) {
+			final long h = head.get();
+			final long t = tail.get();
+			if (h >= t || head.compareAndSet(h, t)) {
+				return;
+			}
+		}
+	}
+}
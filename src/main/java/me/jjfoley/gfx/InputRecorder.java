@@ -0,0 +1,268 @@
+package me.jjfoley.gfx;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * This class writes everything that drives an application to a small binary
+ * file: every key, mouse and window event, the dt of every call to
+ * {@link GFX#update}, and where each frame was drawn. An {@link InputReplay}
+ * can then play the session back, exactly, without a window and as fast as
+ * possible, which turns a session into a repeatable benchmark.
+ * 
+ * <pre>
+ * {@code
+app.startInputRecording(new InputRecorder(new File("session.gfxinput")));
+app.start();
+// ... later, e.g., in a benchmark:
+InputReplay.Result result = new InputReplay(new File("session.gfxinput")).run(new MyApp());
+System.out.println(result);
+}
+ * </pre>
+ * 
+ * Events are written in the order they arrive, between the updates they came
+ * before and after. An event that arrives while update is running is replayed
+ * before the next update.
+ * 
+ * @author jfoley
+ * 
+ */
+public class InputRecorder {
+	/**
+	 * The first four bytes of every file: "GFXI".
+	 */
+	static final int MAGIC = 0x47465849;
+	/**
+	 * The version of the file format.
+	 */
+	static final int VERSION = 1;
+
+	// The kind of each record in the file.
+	static final int KEY = 'K';
+	static final int MOUSE = 'M';
+	static final int WINDOW = 'W';
+	static final int UPDATE = 'U';
+	static final int RENDER = 'R';
+
+	private final File output;
+	private DataOutputStream out;
+	/**
+	 * When the previous event happened, since events store the difference.
+	 */
+	private long previousNanos;
+	private long events;
+	private long updates;
+	private long frames;
+	private IOException failure;
+	private boolean finished;
+
+	/**
+	 * Create a recorder; start it with
+	 * {@link GFX#startInputRecording(InputRecorder)}.
+	 * 
+	 * @param output The file to write; it is replaced if it exists.
+	 */
+	public InputRecorder(File output) {
+		this.output = output;
+	}
+
+	/**
+	 * Open the file and write its header.
+	 * 
+	 * @param width  The width of the application.
+	 * @param height The height of the application.
+	 * @param fps    The frame rate it was aiming for.
+	 */
+	synchronized void start(int width, int height, double fps) {
+		if (out != null || finished) {
+			throw new IllegalStateException("This recorder has already started.");
+		}
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeDouble(fps);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Couldn't create file: " + output, e);
+		}
+		previousNanos = System.nanoTime();
+	}
+
+	/**
+	 * Record a key event.
+	 */
+	synchronized void recordKey(GFXEvent.Type type, long nanos, int keyCode, char keyChar, int modifiers) {
+		if (!writable()) {
+			return;
+		}
+		try {
+			out.writeByte(KEY);
+			out.writeByte(type.ordinal());
+			writeTime(nanos);
+			writeVarInt(out, keyCode);
+			writeVarInt(out, keyChar);
+			writeVarInt(out, modifiers);
+			events++;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Record a mouse event.
+	 */
+	synchronized void recordMouse(GFXEvent.Type type, long nanos, int x, int y, int button, int modifiers,
+			int clickCount) {
+		if (!writable()) {
+			return;
+		}
+		try {
+			out.writeByte(MOUSE);
+			out.writeByte(type.ordinal());
+			writeTime(nanos);
+			writeVarInt(out, x);
+			writeVarInt(out, y);
+			writeVarInt(out, button);
+			writeVarInt(out, modifiers);
+			writeVarInt(out, clickCount);
+			events++;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Record a window event.
+	 */
+	synchronized void recordWindow(int id) {
+		if (!writable()) {
+			return;
+		}
+		try {
+			out.writeByte(WINDOW);
+			writeVarInt(out, id);
+			events++;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Record that update was called.
+	 */
+	synchronized void recordUpdate(double dt) {
+		if (!writable()) {
+			return;
+		}
+		try {
+			out.writeByte(UPDATE);
+			out.writeDouble(dt);
+			updates++;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Record that a frame was drawn.
+	 */
+	synchronized void recordRender() {
+		if (!writable()) {
+			return;
+		}
+		try {
+			out.writeByte(RENDER);
+			frames++;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	private boolean writable() {
+		return out != null && !finished && failure == null;
+	}
+
+	/**
+	 * Write an event's time, as the nanoseconds since the previous event.
+	 */
+	private void writeTime(long nanos) throws IOException {
+		writeVarLong(out, nanos - previousNanos);
+		previousNanos = nanos;
+	}
+
+	/**
+	 * Write an int in as few bytes as it needs: 1 for small numbers, either sign.
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value);
+	}
+
+	/**
+	 * Write a long in as few bytes as it needs: 1 for small numbers, either sign.
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		// Zig-zag, so small negative numbers stay small.
+		long v = (value << 1) ^ (value >> 63);
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Stop recording and close the file.
+	 * 
+	 * @throws UncheckedIOException if anything could not be written.
+	 */
+	synchronized void finish() {
+		if (out == null || finished) {
+			return;
+		}
+		finished = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw new UncheckedIOException("Couldn't save input recording: " + output, failure);
+		}
+	}
+
+	/**
+	 * @return Where the recording is saved.
+	 */
+	public File getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return How many events were recorded.
+	 */
+	public synchronized long getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return How many calls to update were recorded.
+	 */
+	public synchronized long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return How many frames were recorded.
+	 */
+	public synchronized long getFrames() {
+		return frames;
+	}
+}
@@ -0,0 +1,322 @@
+package me.jjfoley.gfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * This class plays back a session saved by an {@link InputRecorder}: the same
+ * events, in the same order, between the same calls to {@link GFX#update} with
+ * the same dt, and the same frames drawn. It runs without a window and as fast
+ * as possible, and times every frame, so a recorded session becomes a
+ * repeatable benchmark.
+ * 
+ * Time is synthetic: events get the times they were recorded with (counted
+ * from the start of the recording), and update gets the recorded dt, no matter
+ * how fast the replay actually runs.
+ * 
+ * @author jfoley
+ * 
+ */
+public class InputReplay {
+	/**
+	 * The timings of one replay.
+	 */
+	public static class Result {
+		private final long[] frameNanos;
+		private final RollingHistogram histogram;
+		private final long updates;
+		private final long events;
+		private final long totalNanos;
+
+		Result(long[] frameNanos, long updates, long events, long totalNanos) {
+			this.frameNanos = frameNanos;
+			this.histogram = new RollingHistogram(Math.max(1, frameNanos.length));
+			for (long n : frameNanos) {
+				histogram.record(n);
+			}
+			this.updates = updates;
+			this.events = events;
+			this.totalNanos = totalNanos;
+		}
+
+		/**
+		 * @return How many frames were drawn.
+		 */
+		public int getFrames() {
+			return frameNanos.length;
+		}
+
+		/**
+		 * @return How many calls to update were made.
+		 */
+		public long getUpdates() {
+			return updates;
+		}
+
+		/**
+		 * @return How many events were played back.
+		 */
+		public long getEvents() {
+			return events;
+		}
+
+		/**
+		 * @return How long the whole replay took, in nanoseconds.
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @param frame Which frame, from 0.
+		 * @return How long it took (its events, updates and drawing), in
+		 *         nanoseconds.
+		 */
+		public long getFrameNanos(int frame) {
+			return frameNanos[frame];
+		}
+
+		/**
+		 * @return A copy of how long every frame took, in nanoseconds.
+		 */
+		public long[] getFrameNanos() {
+			return Arrays.copyOf(frameNanos, frameNanos.length);
+		}
+
+		/**
+		 * @return Every frame time, for percentiles.
+		 */
+		public RollingHistogram getFrameTimes() {
+			return histogram;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d frames, %d updates, %d events in %.1f ms: p50 %.3f p99 %.3f max %.3f ms/frame",
+					getFrames(), updates, events, totalNanos / 1e6, histogram.p50() / 1e6, histogram.p99() / 1e6,
+					histogram.max() / 1e6);
+		}
+	}
+
+	private static final GFXEvent.Type[] TYPES = GFXEvent.Type.values();
+
+	private final File input;
+	/**
+	 * The whole file, read up front so the disk does not affect timings.
+	 */
+	private final byte[] data;
+	private final int width;
+	private final int height;
+	private final double fps;
+	/**
+	 * Where the records start, after the header.
+	 */
+	private final int start;
+
+	/**
+	 * Open a recording.
+	 * 
+	 * @param input A file written by an {@link InputRecorder}.
+	 * @throws UncheckedIOException if it can't be read or is not a recording.
+	 */
+	public InputReplay(File input) {
+		this.input = input;
+		try {
+			this.data = Files.readAllBytes(input.toPath());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Couldn't read input recording: " + input, e);
+		}
+		ByteBuffer header = ByteBuffer.wrap(data);
+		if (data.length < 21 || header.getInt() != InputRecorder.MAGIC) {
+			throw new UncheckedIOException(new IOException("Not an input recording: " + input));
+		}
+		int version = header.get();
+		if (version != InputRecorder.VERSION) {
+			throw new UncheckedIOException(new IOException("Unknown input recording version " + version + ": " + input));
+		}
+		this.width = header.getInt();
+		this.height = header.getInt();
+		this.fps = header.getDouble();
+		this.start = header.position();
+	}
+
+	/**
+	 * @return The width of the application that was recorded.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the application that was recorded.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The frame rate the recorded application was aiming for.
+	 */
+	public double getFps() {
+		return fps;
+	}
+
+	/**
+	 * Play the recording into an application, drawing into an image in memory
+	 * (see {@link GFX#getFrameImage()}). Stops early if the application stops,
+	 * e.g., because the recording has ESC being typed.
+	 * 
+	 * @param app A fresh application, not started yet.
+	 * @return How long each frame took.
+	 * @throws UncheckedIOException if the recording is broken or cut off, e.g.,
+	 *                              because it was never finished.
+	 */
+	public Result run(GFX app) {
+		final EventManager events = app.getEventManager();
+		final FrameMetrics metrics = app.getMetrics();
+		long[] frameNanos = new long[64];
+		int frames = 0;
+		long updates = 0;
+		long eventCount = 0;
+		// The synthetic clock for events.
+		long nanos = 0;
+		// Background results are handed back before the first update of a frame.
+		boolean firstUpdate = true;
+
+		app.setupHeadless();
+		final ByteBuffer in = ByteBuffer.wrap(data);
+		in.position(start);
+		final long begin = System.nanoTime();
+		long frameStart = begin;
+		metrics.beginFrame(frameStart);
+		try {
+			while (in.hasRemaining() && app.isRunning()) {
+				final int at = in.position();
+				if (!hasRecord(in)) {
+					throw new UncheckedIOException(
+							new IOException("Input recording is cut off at byte " + at + ": " + input));
+				}
+				final int kind = in.get();
+				switch (kind) {
+				case InputRecorder.KEY: {
+					GFXEvent.Type type = TYPES[in.get()];
+					nanos += readVarLong(in);
+					int keyCode = (int) readVarLong(in);
+					char keyChar = (char) readVarLong(in);
+					int modifiers = (int) readVarLong(in);
+					events.onKey(type, nanos, keyCode, keyChar, modifiers);
+					eventCount++;
+					break;
+				}
+				case InputRecorder.MOUSE: {
+					GFXEvent.Type type = TYPES[in.get()];
+					nanos += readVarLong(in);
+					int x = (int) readVarLong(in);
+					int y = (int) readVarLong(in);
+					int button = (int) readVarLong(in);
+					int modifiers = (int) readVarLong(in);
+					int clickCount = (int) readVarLong(in);
+					events.onMouse(type, nanos, x, y, button, modifiers, clickCount);
+					eventCount++;
+					break;
+				}
+				case InputRecorder.WINDOW:
+					events.onWindow((int) readVarLong(in));
+					eventCount++;
+					break;
+				case InputRecorder.UPDATE:
+					if (firstUpdate) {
+						app.deliverAsync();
+						firstUpdate = false;
+					}
+					app.stepUpdate(in.getDouble());
+					updates++;
+					break;
+				case InputRecorder.RENDER: {
+					app.renderFrame();
+					final long now = System.nanoTime();
+					if (frames == frameNanos.length) {
+						frameNanos = Arrays.copyOf(frameNanos, frames * 2);
+					}
+					frameNanos[frames++] = now - frameStart;
+					frameStart = now;
+					metrics.beginFrame(now);
+					firstUpdate = true;
+					break;
+				}
+				default:
+					throw new UncheckedIOException(
+							new IOException("Broken input recording at byte " + (in.position() - 1) + ": " + input));
+				}
+			}
+		} finally {
+			app.stop();
+		}
+		return new Result(Arrays.copyOf(frameNanos, frames), updates, eventCount, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Check that the whole record at the current position is there, e.g., not
+	 * cut off because the recording was never finished. Does not move.
+	 * 
+	 * @return false if the data ends part way through the record.
+	 */
+	private static boolean hasRecord(ByteBuffer in) {
+		final ByteBuffer peek = in.duplicate();
+		final int kind = peek.get();
+		switch (kind) {
+		case InputRecorder.KEY:
+			return skip(peek, 1) && skipVarLongs(peek, 4);
+		case InputRecorder.MOUSE:
+			return skip(peek, 1) && skipVarLongs(peek, 6);
+		case InputRecorder.WINDOW:
+			return skipVarLongs(peek, 1);
+		case InputRecorder.UPDATE:
+			return skip(peek, Double.BYTES);
+		default:
+			// RENDER has no body, and unknown kinds are reported by run.
+			return true;
+		}
+	}
+
+	private static boolean skip(ByteBuffer in, int bytes) {
+		if (in.remaining() < bytes) {
+			return false;
+		}
+		in.position(in.position() + bytes);
+		return true;
+	}
+
+	private static boolean skipVarLongs(ByteBuffer in, int count) {
+		for (int i = 0; i < count; i++) {
+			do {
+				if (!in.hasRemaining()) {
+					return false;
+				}
+			} while ((in.get() & 0x80) != 0);
+		}
+		return true;
+	}
+
+	/**
+	 * Read a number written by {@link InputRecorder#writeVarLong}.
+	 */
+	private static long readVarLong(ByteBuffer in) {
+		long v = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.get();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+			shift += 7;
+		}
+		// Undo the zig-zag.
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
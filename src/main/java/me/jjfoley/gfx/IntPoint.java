@@ -2,7 +2,6 @@ package me.jjfoley.gfx;
 
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
-import java.util.Objects;
 
 /**
  * This class represents a location, for a mouse click or other reasons. It
@@ -22,6 +21,16 @@ public class IntPoint extends Point2D {
 	 */
 	public final int y;
 
+	/**
+	 * Points with 0 &lt;= x,y &lt; this are shared by {@link #of}.
+	 */
+	private static final int CACHE_SIZE = 256;
+	/**
+	 * The shared points, created the first time they are asked for. IntPoint is
+	 * immutable, so a race here at worst creates one extra copy.
+	 */
+	private static final IntPoint[] CACHE = new IntPoint[CACHE_SIZE * CACHE_SIZE];
+
 	/**
 	 * A default point is at the origin.
 	 */
@@ -58,6 +67,71 @@ public class IntPoint extends Point2D {
 		this.y = y;
 	}
 
+	/**
+	 * Get a point for an (x,y) pair. Unlike the constructor, this reuses one
+	 * shared point for small coordinates (0 to 255), e.g., grid cells, so it
+	 * usually does not create anything.
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return A point equal to new IntPoint(x, y).
+	 */
+	public static IntPoint of(int x, int y) {
+		if ((x | y) >= 0 && x < CACHE_SIZE && y < CACHE_SIZE) {
+			final int i = y * CACHE_SIZE + x;
+			IntPoint p = CACHE[i];
+			if (p == null) {
+				p = new IntPoint(x, y);
+				CACHE[i] = p;
+			}
+			return p;
+		}
+		return new IntPoint(x, y);
+	}
+
+	/**
+	 * Pack an (x,y) pair into a single long, e.g., as a key for a
+	 * {@link PointSet} or {@link PointMap}.
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return Both, in one number.
+	 */
+	public static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param packed A number from {@link #pack(int, int)}.
+	 * @return The x coordinate that was packed.
+	 */
+	public static int unpackX(long packed) {
+		return (int) (packed >> 32);
+	}
+
+	/**
+	 * @param packed A number from {@link #pack(int, int)}.
+	 * @return The y coordinate that was packed.
+	 */
+	public static int unpackY(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * @param packed A number from {@link #pack(int, int)}.
+	 * @return The point that was packed.
+	 */
+	public static IntPoint unpack(long packed) {
+		return of(unpackX(packed), unpackY(packed));
+	}
+
+	/**
+	 * @return This point packed into a single long; see {@link #pack(int, int)}.
+	 */
+	public long pack() {
+		return pack(x, y);
+	}
+
 	/**
 	 * Print the x,y from inside this IntPoint.
 	 */
@@ -83,11 +157,12 @@ public class IntPoint extends Point2D {
 
 	/**
 	 * This method allows us to put an IntPoint into a {@link java.util.HashMap} or
-	 * {@link java.util.HashSet}.
+	 * {@link java.util.HashSet}. It gives the same answer as
+	 * {@code Objects.hash(x, y)}, without creating an array each time.
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(x, y);
+		return 31 * (31 + x) + y;
 	}
 
 	/**
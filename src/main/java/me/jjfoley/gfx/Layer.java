@@ -0,0 +1,156 @@
+package me.jjfoley.gfx;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * A layer is part of the picture that is drawn by its own painter, instead of
+ * by {@link GFX#draw}. Create one with {@link GFX#addLayer}.
+ * 
+ * A static layer is painted once into an image of its own, and that image is
+ * copied to the screen every frame until you call {@link #invalidate()}. This
+ * is great for backgrounds and borders that take a long time to draw but
+ * rarely change. A layer that is not static is painted every frame, straight
+ * to the screen.
+ * 
+ * Layers are drawn in order of their z: below zero is underneath
+ * {@link GFX#draw}, zero and up is on top of it.
+ * 
+ * @author jfoley
+ *
+ */
+public class Layer {
+	private final int z;
+	private final Consumer<Graphics2D> painter;
+	private volatile boolean isStatic;
+	private volatile boolean visible = true;
+	/**
+	 * Set when the cached image needs to be painted again.
+	 */
+	private volatile boolean invalid = true;
+	/**
+	 * The cached picture of a static layer, or null.
+	 */
+	private BufferedImage image;
+	/**
+	 * How many times the painter has been called.
+	 */
+	private volatile long paints;
+
+	/**
+	 * Create a layer; use {@link GFX#addLayer} instead.
+	 */
+	Layer(int z, boolean isStatic, Consumer<Graphics2D> painter) {
+		if (painter == null) {
+			throw new IllegalArgumentException("painter cannot be null");
+		}
+		this.z = z;
+		this.isStatic = isStatic;
+		this.painter = painter;
+	}
+
+	/**
+	 * @return Where this layer is in the stack; bigger is on top.
+	 */
+	public int getZ() {
+		return z;
+	}
+
+	/**
+	 * @return true if this layer is only painted when invalid.
+	 */
+	public boolean isStatic() {
+		return isStatic;
+	}
+
+	/**
+	 * Choose whether this layer is kept in an image and only painted again when
+	 * {@link #invalidate()}d.
+	 * 
+	 * @param isStatic true to cache this layer.
+	 */
+	public void setStatic(boolean isStatic) {
+		this.isStatic = isStatic;
+		this.invalid = true;
+	}
+
+	/**
+	 * @return true if this layer is drawn at all.
+	 */
+	public boolean isVisible() {
+		return visible;
+	}
+
+	/**
+	 * Hide or show this layer, without forgetting its cached image.
+	 * 
+	 * @param visible false to hide it.
+	 */
+	public void setVisible(boolean visible) {
+		this.visible = visible;
+	}
+
+	/**
+	 * Ask for a static layer to be painted again in the next frame, because
+	 * what it shows has changed. Safe to call from any thread.
+	 */
+	public void invalidate() {
+		this.invalid = true;
+	}
+
+	/**
+	 * @return How many times this layer's painter has been called.
+	 */
+	public long getPaintCount() {
+		return paints;
+	}
+
+	/**
+	 * Draw this layer into a frame, painting it first if needed.
+	 * 
+	 * @param g      The graphics for the frame.
+	 * @param width  The width of the frame.
+	 * @param height The height of the frame.
+	 */
+	void composite(Graphics2D g, int width, int height) {
+		if (!visible) {
+			return;
+		}
+		if (!isStatic) {
+			image = null;
+			paints++;
+			Graphics2D lg = (Graphics2D) g.create();
+			try {
+				painter.accept(lg);
+			} finally {
+				lg.dispose();
+			}
+			return;
+		}
+
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			GraphicsConfiguration gc = g.getDeviceConfiguration();
+			image = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+			invalid = true;
+		}
+		if (invalid) {
+			invalid = false;
+			paints++;
+			Graphics2D lg = image.createGraphics();
+			try {
+				lg.setComposite(AlphaComposite.Clear);
+				lg.fillRect(0, 0, width, height);
+				lg.setComposite(AlphaComposite.SrcOver);
+				lg.setRenderingHints(g.getRenderingHints());
+				painter.accept(lg);
+			} finally {
+				lg.dispose();
+			}
+		}
+		g.drawImage(image, 0, 0, null);
+	}
+}
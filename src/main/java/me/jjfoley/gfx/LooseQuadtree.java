@@ -0,0 +1,185 @@
+package me.jjfoley.gfx;
+
+import java.util.Arrays;
+
+/**
+ * A {@link SpatialIndex} for objects of very different sizes. It is a
+ * quadtree stored as a stack of grids: level 0 is one cell covering the whole
+ * world, and each level below has cells half as big. Each object goes in the
+ * level where cells are at least as big as it is, in the cell containing its
+ * center. Cells are "loose": they are searched as if twice as big, so an
+ * object never has to be split across cells, and moving it is just a matter
+ * of changing which list it is in.
+ * 
+ * Objects outside the world are kept in the cells along its edge, so they are
+ * still found, just more slowly.
+ * 
+ * @author jfoley
+ *
+ */
+public class LooseQuadtree extends SpatialIndex {
+	private final double originX;
+	private final double originY;
+	private final double size;
+	private final int depth;
+	/**
+	 * Per level: where its cells start in {@link #cells}.
+	 */
+	private final int[] levelStart;
+	private final Buckets cells;
+	/**
+	 * Per object: which cell it is in.
+	 */
+	private int[] cellOf = new int[64];
+	/**
+	 * Per level: the biggest half-width or half-height of an object in it, so
+	 * queries know how far to look beyond each cell.
+	 */
+	private final double[] levelSlack;
+
+	/**
+	 * Create a quadtree covering (0, 0) to (width, height), e.g., the window.
+	 * 
+	 * @param width  The width of the world.
+	 * @param height The height of the world.
+	 * @param depth  How many levels; cells on the last level are
+	 *               1/2<sup>depth-1</sup> of the world wide. 6 to 8 is typical.
+	 */
+	public LooseQuadtree(double width, double height, int depth) {
+		this(0, 0, width, height, depth);
+	}
+
+	/**
+	 * Create a quadtree covering part of the world.
+	 * 
+	 * @param x      The left edge of the world.
+	 * @param y      The top edge of the world.
+	 * @param width  The width of the world.
+	 * @param height The height of the world.
+	 * @param depth  How many levels, from 1 to 12.
+	 */
+	public LooseQuadtree(double x, double y, double width, double height, int depth) {
+		if (!(width > 0) || !(height > 0)) {
+			throw new IllegalArgumentException("width and height must be positive");
+		}
+		if (depth < 1 || depth > 12) {
+			throw new IllegalArgumentException("depth must be from 1 to 12: " + depth);
+		}
+		this.originX = x;
+		this.originY = y;
+		this.size = Math.max(width, height);
+		this.depth = depth;
+		this.levelStart = new int[depth + 1];
+		for (int level = 0; level < depth; level++) {
+			levelStart[level + 1] = levelStart[level] + (1 << (2 * level));
+		}
+		this.cells = new Buckets(levelStart[depth]);
+		this.levelSlack = new double[depth];
+	}
+
+	private double cellSize(int level) {
+		return size / (1 << level);
+	}
+
+	private int cellIndex(int level, double x, double y) {
+		final int n = 1 << level;
+		final double s = cellSize(level);
+		int c = Math.max(0, Math.min(n - 1, (int) Math.floor((x - originX) / s)));
+		int r = Math.max(0, Math.min(n - 1, (int) Math.floor((y - originY) / s)));
+		return levelStart[level] + r * n + c;
+	}
+
+	/**
+	 * Which cell should an object with the current {@link #box} go in?
+	 */
+	private int chooseCell(int id) {
+		final int b = 4 * id;
+		final double w = box[b + 2] - box[b];
+		final double h = box[b + 3] - box[b + 1];
+		final double biggest = Math.max(w, h);
+		int level = 0;
+		while (level + 1 < depth && cellSize(level + 1) >= biggest) {
+			level++;
+		}
+		return cellIndex(level, (box[b] + box[b + 2]) / 2, (box[b + 1] + box[b + 3]) / 2);
+	}
+
+	private int levelOf(int cell) {
+		int level = 0;
+		while (levelStart[level + 1] <= cell) {
+			level++;
+		}
+		return level;
+	}
+
+	@Override
+	void ensureCapacity(int n) {
+		super.ensureCapacity(n);
+		if (cellOf.length < present.length) {
+			cellOf = Arrays.copyOf(cellOf, present.length);
+		}
+	}
+
+	@Override
+	void link(int id) {
+		final int cell = chooseCell(id);
+		final int level = levelOf(cell);
+		final int b = 4 * id;
+		final double half = Math.max(box[b + 2] - box[b], box[b + 3] - box[b + 1]) / 2;
+		levelSlack[level] = Math.max(levelSlack[level], half);
+		cellOf[id] = cell;
+		cells.add(cell, id);
+	}
+
+	@Override
+	void unlink(int id) {
+		cells.remove(cellOf[id], id);
+	}
+
+	@Override
+	void relink(int id, double minX, double minY, double maxX, double maxY) {
+		setBox(id, minX, minY, maxX, maxY);
+		final int cell = chooseCell(id);
+		final int b = 4 * id;
+		final int level = levelOf(cell);
+		final double half = Math.max(box[b + 2] - box[b], box[b + 3] - box[b + 1]) / 2;
+		levelSlack[level] = Math.max(levelSlack[level], half);
+		if (cell != cellOf[id]) {
+			cells.remove(cellOf[id], id);
+			cellOf[id] = cell;
+			cells.add(cell, id);
+		}
+	}
+
+	@Override
+	public boolean queryRect(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+		nextStamp();
+		for (int level = 0; level < depth; level++) {
+			// An object's center is within slack of its edges, so look that far out.
+			final double slack = levelSlack[level];
+			final int n = 1 << level;
+			final double s = cellSize(level);
+			final int c0 = Math.max(0, Math.min(n - 1, (int) Math.floor((minX - slack - originX) / s)));
+			final int c1 = Math.max(0, Math.min(n - 1, (int) Math.floor((maxX + slack - originX) / s)));
+			final int r0 = Math.max(0, Math.min(n - 1, (int) Math.floor((minY - slack - originY) / s)));
+			final int r1 = Math.max(0, Math.min(n - 1, (int) Math.floor((maxY + slack - originY) / s)));
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					final int cell = levelStart[level] + r * n + c;
+					for (int i = 0; i < cells.size(cell); i++) {
+						final int id = cells.get(cell, i);
+						if (overlaps(id, minX, minY, maxX, maxY) && !visitor.visit(id)) {
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	double initialSearchRadius() {
+		return cellSize(depth - 1);
+	}
+}
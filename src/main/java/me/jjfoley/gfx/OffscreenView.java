@@ -0,0 +1,73 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * This class draws an application into a {@link BufferedImage} instead of a
+ * window, so it works with {@code java.awt.headless=true}.
+ */
+class OffscreenView implements RenderTarget {
+	/**
+	 * What application are we rendering?
+	 */
+	private final GFX app;
+	/**
+	 * Where the frames end up; we reuse it every frame.
+	 */
+	private final BufferedImage image;
+	/**
+	 * The pixels of {@link #image}, as 0xRRGGBB.
+	 */
+	private final int[] pixels;
+
+	/**
+	 * Construct a new offscreen view of a particular size for an app.
+	 * 
+	 * @param width  - width of the image in pixels.
+	 * @param height - height of the image in pixels.
+	 * @param app    - the app object itself.
+	 */
+	public OffscreenView(int width, int height, GFX app) {
+		this.app = app;
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	@Override
+	public int getWidth() {
+		return image.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return image.getHeight();
+	}
+
+	/**
+	 * @return The image holding the most recent frame.
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @return The pixels of the most recent frame, row by row, as 0xRRGGBB.
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	@Override
+	public void render() {
+		Graphics2D g = image.createGraphics();
+		try {
+			app.paintFrame(g, getWidth(), getHeight());
+		} finally {
+			final long start = System.nanoTime();
+			g.dispose();
+			app.getMetrics().add(FrameMetrics.Phase.PRESENT, System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,421 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A lot of tiny things (sparks, smoke, rain) that fly around for a while and
+ * then disappear. Instead of one object per particle, every particle is a
+ * slot in a few arrays (x, y, velocity, age, color), so a hundred thousand of
+ * them take no garbage collection and are quick to loop over.
+ * 
+ * <pre>
+ * {@code
+ParticleSystem sparks = new ParticleSystem(100_000);
+sparks.setGravity(0, 200);
+...
+public void update(double dt) {
+	sparks.emit(mouseX, mouseY, vx, vy, 1.5f, 0xFFAA00);
+	sparks.update(dt);
+}
+public void draw(Graphics2D g) {
+	getFramebuffer().fill(0);
+	sparks.render(getFramebuffer());
+}
+}
+ * </pre>
+ * 
+ * When there are many particles, {@link #update(double)} moves them on every
+ * core. Dead particles are removed by moving the last particle into their
+ * slot, so the order of particles changes over time.
+ * 
+ * Use it from {@link GFX#update} and {@link GFX#draw}, but not from both at
+ * once with {@link GFX#setPipelined(boolean)}.
+ * 
+ * @author jfoley
+ * 
+ */
+public class ParticleSystem {
+	/**
+	 * With at least this many particles, {@link #update(double)} uses every
+	 * core, by default.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+	/**
+	 * How many particles each core moves at a time.
+	 */
+	private static final int CHUNK = 4096;
+
+	private final int capacity;
+	private final float[] x;
+	private final float[] y;
+	private final float[] vx;
+	private final float[] vy;
+	private final float[] age;
+	private final float[] lifetime;
+	private final int[] color;
+	private final int[] sprite;
+	private int count;
+
+	private float gravityX;
+	private float gravityY;
+	private float drag;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Reused by {@link #draw(Graphics2D, SpriteAtlas)}.
+	 */
+	private int[] drawHandles = new int[0];
+	private int[] drawX = new int[0];
+	private int[] drawY = new int[0];
+
+	/**
+	 * Create an empty particle system.
+	 * 
+	 * @param capacity The most particles that can be alive at once.
+	 */
+	public ParticleSystem(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.x = new float[capacity];
+		this.y = new float[capacity];
+		this.vx = new float[capacity];
+		this.vy = new float[capacity];
+		this.age = new float[capacity];
+		this.lifetime = new float[capacity];
+		this.color = new int[capacity];
+		this.sprite = new int[capacity];
+	}
+
+	/**
+	 * @return How many particles are alive.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return The most particles that can be alive at once.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Add a particle with no sprite.
+	 * 
+	 * @param x        Where it starts.
+	 * @param y        Where it starts.
+	 * @param vx       How fast it moves right, in pixels per second.
+	 * @param vy       How fast it moves down, in pixels per second.
+	 * @param lifetime How many seconds it lives.
+	 * @param rgb      Its color, as 0xRRGGBB.
+	 * @return Its index, or -1 if there is no room.
+	 */
+	public int emit(float x, float y, float vx, float vy, float lifetime, int rgb) {
+		return emit(x, y, vx, vy, lifetime, rgb, -1);
+	}
+
+	/**
+	 * Add a particle.
+	 * 
+	 * @param x        Where it starts.
+	 * @param y        Where it starts.
+	 * @param vx       How fast it moves right, in pixels per second.
+	 * @param vy       How fast it moves down, in pixels per second.
+	 * @param lifetime How many seconds it lives.
+	 * @param rgb      Its color, as 0xRRGGBB.
+	 * @param sprite   A {@link SpriteAtlas} handle to draw it with, or -1.
+	 * @return Its index, or -1 if there is no room.
+	 */
+	public int emit(float x, float y, float vx, float vy, float lifetime, int rgb, int sprite) {
+		if (count == capacity) {
+			return -1;
+		}
+		final int i = count++;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.vx[i] = vx;
+		this.vy[i] = vy;
+		this.age[i] = 0;
+		this.lifetime[i] = lifetime;
+		this.color[i] = rgb;
+		this.sprite[i] = sprite;
+		return i;
+	}
+
+	/**
+	 * Remove every particle.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Make a particle die at the next {@link #update(double)}.
+	 * 
+	 * @param i Which particle, from 0 to {@link #size()}.
+	 */
+	public void kill(int i) {
+		checkIndex(i);
+		lifetime[i] = 0;
+	}
+
+	/**
+	 * @param i Which particle.
+	 * @return Where it is.
+	 */
+	public float getX(int i) {
+		checkIndex(i);
+		return x[i];
+	}
+
+	/**
+	 * @param i Which particle.
+	 * @return Where it is.
+	 */
+	public float getY(int i) {
+		checkIndex(i);
+		return y[i];
+	}
+
+	/**
+	 * @param i Which particle.
+	 * @return How long it has been alive, from 0 to 1 of its lifetime.
+	 */
+	public float getAge(int i) {
+		checkIndex(i);
+		return lifetime[i] > 0 ? age[i] / lifetime[i] : 1;
+	}
+
+	/**
+	 * @param i Which particle.
+	 * @return Its color, as 0xRRGGBB.
+	 */
+	public int getColor(int i) {
+		checkIndex(i);
+		return color[i];
+	}
+
+	/**
+	 * @param ax Added to every particle's velocity per second, to the right.
+	 * @param ay Added to every particle's velocity per second, downwards.
+	 */
+	public void setGravity(float ax, float ay) {
+		this.gravityX = ax;
+		this.gravityY = ay;
+	}
+
+	/**
+	 * @param drag How much of its speed a particle loses per second, from 0 (the
+	 *             default) to 1.
+	 */
+	public void setDrag(float drag) {
+		if (drag < 0 || drag > 1) {
+			throw new IllegalArgumentException("drag must be from 0 to 1: " + drag);
+		}
+		this.drag = drag;
+	}
+
+	/**
+	 * @param particles Use every core once there are at least this many
+	 *                  particles; default {@link #DEFAULT_PARALLEL_THRESHOLD}.
+	 */
+	public void setParallelThreshold(int particles) {
+		this.parallelThreshold = particles;
+	}
+
+	/**
+	 * Choose how many threads {@link #update(double)} uses. By default it shares
+	 * Java's common pool, which has one thread per core.
+	 * 
+	 * @param threads How many threads, at least one.
+	 */
+	public void setParallelism(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1: " + threads);
+		}
+		ForkJoinPool old = pool;
+		pool = new ForkJoinPool(threads);
+		if (old != ForkJoinPool.commonPool()) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Move every particle, age it, and remove the ones that are too old.
+	 * 
+	 * @param dt The time step, in seconds.
+	 */
+	public void update(double dt) {
+		final float step = (float) dt;
+		if (count >= parallelThreshold) {
+			pool.invoke(new Chunks(step, 0, (count + CHUNK - 1) / CHUNK));
+		} else {
+			move(step, 0, count);
+		}
+		compact();
+	}
+
+	/**
+	 * Move particles lo to hi (not included) on this thread.
+	 */
+	private void move(float dt, int lo, int hi) {
+		final float gx = gravityX * dt;
+		final float gy = gravityY * dt;
+		final float keep = drag == 0 ? 1 : (float) Math.pow(1 - drag, dt);
+		for (int i = lo; i < hi; i++) {
+			float nvx = (vx[i] + gx) * keep;
+			float nvy = (vy[i] + gy) * keep;
+			vx[i] = nvx;
+			vy[i] = nvy;
+			x[i] += nvx * dt;
+			y[i] += nvy * dt;
+			age[i] += dt;
+		}
+	}
+
+	/**
+	 * Remove dead particles by moving the last living one into each hole.
+	 */
+	private void compact() {
+		int n = count;
+		int i = 0;
+		while (i < n) {
+			if (age[i] < lifetime[i]) {
+				i++;
+				continue;
+			}
+			// Don't move a dead particle into the hole.
+			n--;
+			while (n > i && !(age[n] < lifetime[n])) {
+				n--;
+			}
+			if (n > i) {
+				x[i] = x[n];
+				y[i] = y[n];
+				vx[i] = vx[n];
+				vy[i] = vy[n];
+				age[i] = age[n];
+				lifetime[i] = lifetime[n];
+				color[i] = color[n];
+				sprite[i] = sprite[n];
+				i++;
+			}
+		}
+		count = n;
+	}
+
+	/**
+	 * Draw each particle as one pixel straight into a framebuffer; the fastest
+	 * way to draw a lot of them. Particles off the edges are skipped.
+	 * 
+	 * @param fb The framebuffer, e.g., {@link GFX#getFramebuffer()}.
+	 */
+	public void render(Framebuffer fb) {
+		final int[] pixels = fb.getPixels();
+		final int w = fb.getWidth();
+		final int h = fb.getHeight();
+		for (int i = 0; i < count; i++) {
+			// Casting first would round -0.5 up to 0.
+			final float fx = x[i];
+			final float fy = y[i];
+			if (fx >= 0 && fy >= 0 && fx < w && fy < h) {
+				pixels[(int) fx + (int) fy * w] = color[i];
+			}
+		}
+	}
+
+	/**
+	 * Draw each particle that has a sprite, centered on where it is, in one
+	 * {@link SpriteAtlas#drawBatch batch}. Particles without a sprite are
+	 * skipped.
+	 * 
+	 * @param g     The graphics to draw to.
+	 * @param atlas The atlas the sprite handles came from.
+	 */
+	public void draw(Graphics2D g, SpriteAtlas atlas) {
+		if (drawX.length < count) {
+			drawHandles = new int[capacity];
+			drawX = new int[capacity];
+			drawY = new int[capacity];
+		}
+		// Gather the particles with sprites into one batch.
+		final int[] handles = drawHandles;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			final int s = sprite[i];
+			if (s >= 0) {
+				handles[n] = s;
+				drawX[n] = (int) x[i] - (atlas.getWidth(s) >> 1);
+				drawY[n] = (int) y[i] - (atlas.getHeight(s) >> 1);
+				n++;
+			}
+		}
+		atlas.drawBatch(g, handles, drawX, drawY, n);
+	}
+
+	/**
+	 * Make a soft round dot for {@link #draw(Graphics2D, SpriteAtlas)}: solid in
+	 * the middle and fading out to the edge.
+	 * 
+	 * @param radius How far it reaches from the center, in pixels.
+	 * @param rgb    Its color, as 0xRRGGBB.
+	 * @return A new image, 2 * radius pixels across; add it to a
+	 *         {@link SpriteAtlas}.
+	 */
+	public static BufferedImage makeStamp(int radius, int rgb) {
+		if (radius < 1) {
+			throw new IllegalArgumentException("radius must be positive: " + radius);
+		}
+		final int size = 2 * radius;
+		BufferedImage stamp = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		for (int py = 0; py < size; py++) {
+			for (int px = 0; px < size; px++) {
+				double dx = px + 0.5 - radius;
+				double dy = py + 0.5 - radius;
+				double d = Math.sqrt(dx * dx + dy * dy) / radius;
+				int alpha = (int) Math.round(255 * Math.max(0, Math.min(1, 1 - d)));
+				stamp.setRGB(px, py, (alpha << 24) | (rgb & 0xFFFFFF));
+			}
+		}
+		return stamp;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("particle " + i + " of " + count);
+		}
+	}
+
+	/**
+	 * A range of chunks, split in half until there is only one.
+	 */
+	private final class Chunks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final float dt;
+		private final int lo;
+		private final int hi;
+
+		Chunks(float dt, int lo, int hi) {
+			this.dt = dt;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Chunks(dt, lo, mid), new Chunks(dt, mid, hi));
+				return;
+			}
+			move(dt, lo * CHUNK, Math.min(count, (lo + 1) * CHUNK));
+		}
+	}
+}
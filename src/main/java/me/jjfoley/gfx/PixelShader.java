@@ -0,0 +1,26 @@
+package me.jjfoley.gfx;
+
+/**
+ * Computes the color of one pixel, for {@link Framebuffer#shade(PixelShader)}.
+ * This is called from many threads at once, so it should only read shared
+ * state, never change it.
+ * 
+ * <pre>
+ * {@code
+getFramebuffer().shade((x, y) -> (x ^ y) & 0xFF);
+}
+ * </pre>
+ * 
+ * @author jfoley
+ */
+@FunctionalInterface
+public interface PixelShader {
+	/**
+	 * Compute the color of a pixel.
+	 * 
+	 * @param x The column, from 0 to the width.
+	 * @param y The row, from 0 to the height.
+	 * @return The color as 0xRRGGBB, e.g., 0xFF0000 is red.
+	 */
+	int shade(int x, int y);
+}
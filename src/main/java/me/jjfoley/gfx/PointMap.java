@@ -0,0 +1,277 @@
+package me.jjfoley.gfx;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A map from (x,y) points to values, like a {@code HashMap<IntPoint, V>} but
+ * without creating an object per key: each point is packed into a long by
+ * {@link IntPoint#pack(int, int)}. Good for grid games, e.g., what is in each
+ * cell. Get one from {@link Util#makePointMap()}.
+ * 
+ * Values may not be null; null means "not there".
+ * 
+ * It is not thread-safe.
+ * 
+ * @author jfoley
+ *
+ * @param <V> The type of the values.
+ */
+public class PointMap<V> extends PointTable {
+	/**
+	 * Called for each entry in the map.
+	 * 
+	 * @param <V> The type of the values.
+	 */
+	@FunctionalInterface
+	public interface Visitor<V> {
+		/**
+		 * @param x     The x coordinate of a key.
+		 * @param y     The y coordinate of a key.
+		 * @param value The value for that key.
+		 */
+		void visit(int x, int y, V value);
+	}
+
+	/**
+	 * Values, in the same slots as their keys.
+	 */
+	private Object[] vals;
+	/**
+	 * The value for the point that packs to {@link PointTable#EMPTY}.
+	 */
+	private V emptyKeyValue;
+
+	/**
+	 * Create an empty map.
+	 */
+	public PointMap() {
+		this(16);
+	}
+
+	/**
+	 * Create an empty map with room for some entries before it has to grow.
+	 * 
+	 * @param expected How many entries to make room for.
+	 */
+	public PointMap(int expected) {
+		super(expected);
+	}
+
+	/**
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return The value for that point, or null.
+	 */
+	public V get(int x, int y) {
+		return getPacked(IntPoint.pack(x, y));
+	}
+
+	/**
+	 * @param p The point.
+	 * @return The value for that point, or null.
+	 */
+	public V get(IntPoint p) {
+		return getPacked(p.pack());
+	}
+
+	/**
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @return The value for that point, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V getPacked(long packed) {
+		if (packed == EMPTY) {
+			return emptyKeyValue;
+		}
+		int slot = find(packed);
+		return slot < 0 ? null : (V) vals[slot];
+	}
+
+	/**
+	 * @param x            The x coordinate.
+	 * @param y            The y coordinate.
+	 * @param defaultValue What to return if the point is not in the map.
+	 * @return The value for that point, or defaultValue.
+	 */
+	public V getOrDefault(int x, int y, V defaultValue) {
+		V v = get(x, y);
+		return v == null ? defaultValue : v;
+	}
+
+	/**
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return true if the point has a value.
+	 */
+	public boolean containsKey(int x, int y) {
+		return get(x, y) != null;
+	}
+
+	/**
+	 * @param p The point.
+	 * @return true if the point has a value.
+	 */
+	public boolean containsKey(IntPoint p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Set the value for a point.
+	 * 
+	 * @param x     The x coordinate.
+	 * @param y     The y coordinate.
+	 * @param value The value; not null.
+	 * @return The old value, or null.
+	 */
+	public V put(int x, int y, V value) {
+		return putPacked(IntPoint.pack(x, y), value);
+	}
+
+	/**
+	 * Set the value for a point.
+	 * 
+	 * @param p     The point.
+	 * @param value The value; not null.
+	 * @return The old value, or null.
+	 */
+	public V put(IntPoint p, V value) {
+		return putPacked(p.pack(), value);
+	}
+
+	/**
+	 * Set the value for a point.
+	 * 
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @param value  The value; not null.
+	 * @return The old value, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V putPacked(long packed, V value) {
+		if (value == null) {
+			throw new NullPointerException("PointMap values may not be null");
+		}
+		if (packed == EMPTY) {
+			V old = emptyKeyValue;
+			emptyKeyValue = value;
+			hasEmptyKey = true;
+			return old;
+		}
+		int slot = claim(packed);
+		if (slot < 0) {
+			vals[-(slot + 1)] = value;
+			return null;
+		}
+		V old = (V) vals[slot];
+		vals[slot] = value;
+		return old;
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return Its value, or null if it was not there.
+	 */
+	public V remove(int x, int y) {
+		return removePacked(IntPoint.pack(x, y));
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param p The point.
+	 * @return Its value, or null if it was not there.
+	 */
+	public V remove(IntPoint p) {
+		return removePacked(p.pack());
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @return Its value, or null if it was not there.
+	 */
+	@SuppressWarnings("unchecked")
+	public V removePacked(long packed) {
+		if (packed == EMPTY) {
+			V old = emptyKeyValue;
+			emptyKeyValue = null;
+			hasEmptyKey = false;
+			return old;
+		}
+		int slot = find(packed);
+		if (slot < 0) {
+			return null;
+		}
+		V old = (V) vals[slot];
+		removeSlot(slot);
+		return old;
+	}
+
+	/**
+	 * Call a visitor for every entry, in no particular order. Do not add or
+	 * remove points while doing this.
+	 * 
+	 * @param visitor Called with each entry.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<? super V> visitor) {
+		if (hasEmptyKey) {
+			visitor.visit(IntPoint.unpackX(EMPTY), IntPoint.unpackY(EMPTY), emptyKeyValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			long k = keys[i];
+			if (k != EMPTY) {
+				visitor.visit(IntPoint.unpackX(k), IntPoint.unpackY(k), (V) vals[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return A copy of the entries, as a regular Java map.
+	 */
+	public Map<IntPoint, V> toMap() {
+		Map<IntPoint, V> out = Util.makeMap();
+		forEach((x, y, v) -> out.put(IntPoint.of(x, y), v));
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+
+	@Override
+	void allocateValues(int capacity) {
+		vals = new Object[capacity];
+	}
+
+	@Override
+	Object values() {
+		return vals;
+	}
+
+	@Override
+	void copyValue(Object oldValues, int from, int to) {
+		vals[to] = ((Object[]) oldValues)[from];
+	}
+
+	@Override
+	void moveValue(int from, int to) {
+		vals[to] = vals[from];
+	}
+
+	@Override
+	void clearValue(int slot) {
+		vals[slot] = null;
+	}
+
+	@Override
+	void clearValues() {
+		Arrays.fill(vals, null);
+		emptyKeyValue = null;
+	}
+}
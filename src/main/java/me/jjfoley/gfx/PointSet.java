@@ -0,0 +1,190 @@
+package me.jjfoley.gfx;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of (x,y) points, like a {@code HashSet<IntPoint>} but without creating
+ * an object per point: each point is packed into a long by
+ * {@link IntPoint#pack(int, int)}. Good for grid games, e.g., which cells are
+ * walls or have been visited. Get one from {@link Util#makePointSet()}.
+ * 
+ * It is not thread-safe.
+ * 
+ * @author jfoley
+ *
+ */
+public class PointSet extends PointTable {
+	/**
+	 * Called for each point in the set.
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+		/**
+		 * @param x The x coordinate of a point.
+		 * @param y The y coordinate of a point.
+		 */
+		void visit(int x, int y);
+	}
+
+	/**
+	 * Create an empty set.
+	 */
+	public PointSet() {
+		this(16);
+	}
+
+	/**
+	 * Create an empty set with room for some points before it has to grow.
+	 * 
+	 * @param expected How many points to make room for.
+	 */
+	public PointSet(int expected) {
+		super(expected);
+	}
+
+	/**
+	 * Add a point.
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return true if it was not already in the set.
+	 */
+	public boolean add(int x, int y) {
+		return addPacked(IntPoint.pack(x, y));
+	}
+
+	/**
+	 * Add a point.
+	 * 
+	 * @param p The point.
+	 * @return true if it was not already in the set.
+	 */
+	public boolean add(IntPoint p) {
+		return addPacked(p.pack());
+	}
+
+	/**
+	 * Add a point.
+	 * 
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @return true if it was not already in the set.
+	 */
+	public boolean addPacked(long packed) {
+		if (packed == EMPTY) {
+			boolean added = !hasEmptyKey;
+			hasEmptyKey = true;
+			return added;
+		}
+		return claim(packed) < 0;
+	}
+
+	/**
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return true if the point is in the set.
+	 */
+	public boolean contains(int x, int y) {
+		return containsPacked(IntPoint.pack(x, y));
+	}
+
+	/**
+	 * @param p The point.
+	 * @return true if the point is in the set.
+	 */
+	public boolean contains(IntPoint p) {
+		return containsPacked(p.pack());
+	}
+
+	/**
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @return true if the point is in the set.
+	 */
+	public boolean containsPacked(long packed) {
+		if (packed == EMPTY) {
+			return hasEmptyKey;
+		}
+		return find(packed) >= 0;
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param x The x coordinate.
+	 * @param y The y coordinate.
+	 * @return true if it was in the set.
+	 */
+	public boolean remove(int x, int y) {
+		return removePacked(IntPoint.pack(x, y));
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param p The point.
+	 * @return true if it was in the set.
+	 */
+	public boolean remove(IntPoint p) {
+		return removePacked(p.pack());
+	}
+
+	/**
+	 * Take a point out.
+	 * 
+	 * @param packed The point, from {@link IntPoint#pack(int, int)}.
+	 * @return true if it was in the set.
+	 */
+	public boolean removePacked(long packed) {
+		if (packed == EMPTY) {
+			boolean removed = hasEmptyKey;
+			hasEmptyKey = false;
+			return removed;
+		}
+		int slot = find(packed);
+		if (slot < 0) {
+			return false;
+		}
+		removeSlot(slot);
+		return true;
+	}
+
+	/**
+	 * Call a visitor for every point, in no particular order. Do not add or
+	 * remove points while doing this.
+	 * 
+	 * @param visitor Called with each point.
+	 */
+	public void forEach(Visitor visitor) {
+		if (hasEmptyKey) {
+			visitor.visit(IntPoint.unpackX(EMPTY), IntPoint.unpackY(EMPTY));
+		}
+		for (long k : keys) {
+			if (k != EMPTY) {
+				visitor.visit(IntPoint.unpackX(k), IntPoint.unpackY(k));
+			}
+		}
+	}
+
+	/**
+	 * @return A copy of the points, as a regular Java list.
+	 */
+	public List<IntPoint> toList() {
+		List<IntPoint> out = Util.makeList();
+		forEach((x, y) -> out.add(IntPoint.of(x, y)));
+		return out;
+	}
+
+	/**
+	 * @return A copy of the points, as a regular Java set.
+	 */
+	public Set<IntPoint> toSet() {
+		Set<IntPoint> out = Util.makeSet();
+		forEach((x, y) -> out.add(IntPoint.of(x, y)));
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+}
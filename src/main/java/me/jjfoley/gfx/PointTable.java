@@ -0,0 +1,216 @@
+package me.jjfoley.gfx;
+
+import java.util.Arrays;
+
+/**
+ * The shared part of {@link PointSet} and {@link PointMap}: an open-addressing
+ * hash table of (x,y) pairs packed into longs by
+ * {@link IntPoint#pack(int, int)}. Collisions go to the next free slot, and
+ * removing shifts later entries back, so there are no "deleted" markers to
+ * slow lookups down over time.
+ * 
+ * @author jfoley
+ *
+ */
+abstract class PointTable {
+	/**
+	 * Marks an empty slot. The one real point that packs to this number is
+	 * kept outside the table, in {@link #hasEmptyKey}.
+	 */
+	static final long EMPTY = Long.MIN_VALUE;
+	/**
+	 * The table grows when it is this full.
+	 */
+	private static final double LOAD_FACTOR = 0.6;
+
+	/**
+	 * The keys; always a power of two long.
+	 */
+	long[] keys;
+	/**
+	 * keys.length - 1.
+	 */
+	int mask;
+	/**
+	 * How many keys are in {@link #keys}.
+	 */
+	int used;
+	/**
+	 * True if the point that packs to {@link #EMPTY} is in the collection.
+	 */
+	boolean hasEmptyKey;
+	private int growAt;
+
+	/**
+	 * @param expected How many points to make room for.
+	 */
+	PointTable(int expected) {
+		int capacity = 8;
+		while (capacity * LOAD_FACTOR < expected) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @return How many points are in the collection.
+	 */
+	public int size() {
+		return used + (hasEmptyKey ? 1 : 0);
+	}
+
+	/**
+	 * @return true if there are no points.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Spread the bits of a key, so nearby points land far apart.
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * @return The slot holding key, or -1.
+	 */
+	final int find(long key) {
+		int i = hash(key) & mask;
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				return i;
+			}
+			if (k == EMPTY) {
+				return -1;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Find the slot for a key, claiming an empty one if it is not there.
+	 * 
+	 * @return The slot if it was already there, or -(slot + 1) if it is new.
+	 */
+	final int claim(long key) {
+		if (used >= growAt) {
+			rehash(keys.length * 2);
+		}
+		int i = hash(key) & mask;
+		while (true) {
+			long k = keys[i];
+			if (k == key) {
+				return i;
+			}
+			if (k == EMPTY) {
+				keys[i] = key;
+				used++;
+				return -(i + 1);
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Empty a slot, moving later entries back so lookups still find them.
+	 */
+	final void removeSlot(int slot) {
+		used--;
+		int hole = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			long k = keys[i];
+			if (k == EMPTY) {
+				break;
+			}
+			int home = hash(k) & mask;
+			// Move k into the hole unless its home is between the hole and i.
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = k;
+				moveValue(i, hole);
+				hole = i;
+			}
+		}
+		keys[hole] = EMPTY;
+		clearValue(hole);
+	}
+
+	/**
+	 * Take every point out, keeping the memory for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		used = 0;
+		hasEmptyKey = false;
+		clearValues();
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		growAt = (int) (capacity * LOAD_FACTOR);
+		allocateValues(capacity);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object oldValues = values();
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			long k = oldKeys[j];
+			if (k != EMPTY) {
+				int i = hash(k) & mask;
+				while (keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = k;
+				copyValue(oldValues, j, i);
+			}
+		}
+	}
+
+	/**
+	 * Make room for values in a new table of this many slots.
+	 */
+	void allocateValues(int capacity) {
+	}
+
+	/**
+	 * @return The current values array, for {@link #copyValue}; null if none.
+	 */
+	Object values() {
+		return null;
+	}
+
+	/**
+	 * Copy the value in slot from of an old values array into slot to.
+	 */
+	void copyValue(Object oldValues, int from, int to) {
+	}
+
+	/**
+	 * Move the value in one slot to another.
+	 */
+	void moveValue(int from, int to) {
+	}
+
+	/**
+	 * Forget the value in a slot.
+	 */
+	void clearValue(int slot) {
+	}
+
+	/**
+	 * Forget all values.
+	 */
+	void clearValues() {
+	}
+}
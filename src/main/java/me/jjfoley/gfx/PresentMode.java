@@ -0,0 +1,26 @@
+package me.jjfoley.gfx;
+
+/**
+ * How a finished frame gets from its back buffer onto the screen; pick one with
+ * {@link GFX#setPresentation(PresentMode, int)}.
+ * 
+ * @author jfoley
+ * 
+ */
+public enum PresentMode {
+	/**
+	 * Let Java choose: page flipping if the screen can do it, otherwise copying.
+	 * This is the default.
+	 */
+	AUTO,
+	/**
+	 * Page flipping: the back buffer becomes the screen, with nothing copied.
+	 * Usually only possible in full-screen mode; if it isn't, we fall back to
+	 * {@link #AUTO}.
+	 */
+	FLIP,
+	/**
+	 * Blitting: the back buffer is copied onto the screen.
+	 */
+	BLIT;
+}
@@ -0,0 +1,108 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what happened while putting frames on the screen. The video memory
+ * behind a window can be taken away at any time (e.g., when the screen locks
+ * or another program goes full-screen); when that happens the frame is drawn
+ * again, and these numbers say how often. Get it from
+ * {@link GFX#getPresentStats()}.
+ * 
+ * @author jfoley
+ * 
+ */
+public class PresentStats {
+	private final AtomicLong presents = new AtomicLong();
+	private final AtomicLong restored = new AtomicLong();
+	private final AtomicLong lost = new AtomicLong();
+	private final AtomicLong redraws = new AtomicLong();
+	private final AtomicLong strategies = new AtomicLong();
+	private volatile boolean pageFlipping;
+	private volatile int buffers;
+
+	/**
+	 * Make empty counters; use {@link GFX#getPresentStats()} instead.
+	 */
+	PresentStats() {
+	}
+
+	/**
+	 * @return How many frames were put on the screen.
+	 */
+	public long getPresents() {
+		return presents.get();
+	}
+
+	/**
+	 * @return How many times the back buffer was lost while drawing and had to
+	 *         be drawn again.
+	 */
+	public long getContentsRestored() {
+		return restored.get();
+	}
+
+	/**
+	 * @return How many times a frame was lost after it was shown.
+	 */
+	public long getContentsLost() {
+		return lost.get();
+	}
+
+	/**
+	 * @return How many extra times a frame was drawn because of the above.
+	 */
+	public long getRedraws() {
+		return redraws.get();
+	}
+
+	/**
+	 * @return How many times the buffers were made, e.g., after the settings
+	 *         changed.
+	 */
+	public long getStrategies() {
+		return strategies.get();
+	}
+
+	/**
+	 * @return true if frames are page flipped; false if they are copied.
+	 */
+	public boolean isPageFlipping() {
+		return pageFlipping;
+	}
+
+	/**
+	 * @return How many buffers are in use, including the screen.
+	 */
+	public int getBuffers() {
+		return buffers;
+	}
+
+	void present() {
+		presents.incrementAndGet();
+	}
+
+	void restored() {
+		restored.incrementAndGet();
+	}
+
+	void lost() {
+		lost.incrementAndGet();
+	}
+
+	void redraw() {
+		redraws.incrementAndGet();
+	}
+
+	void created(int buffers, boolean pageFlipping) {
+		strategies.incrementAndGet();
+		this.buffers = buffers;
+		this.pageFlipping = pageFlipping;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d presents, %d restored, %d lost, %d redraws; %d buffers, %s", getPresents(),
+				getContentsRestored(), getContentsLost(), getRedraws(), buffers, pageFlipping ? "flip" : "blit");
+	}
+}
@@ -0,0 +1,107 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * How nice (and how slow) drawing should be. Each level is a bundle of Java2D
+ * {@link RenderingHints} that is applied to the {@link Graphics2D} before
+ * {@link GFX#draw} gets it. {@link #HIGH} is the default, and is what GFX has
+ * always used: smooth shapes and smooth text.
+ * 
+ * Pick one with {@link GFX#setQuality(Quality)}, or let a
+ * {@link QualityController} pick one to keep the frame rate up. Your own draw
+ * code can ask {@link GFX#getQuality()} to skip optional detail:
+ * 
+ * <pre>
+ * {@code
+if (getQuality().isAtLeast(Quality.HIGH)) {
+	drawShadows(g);
+}
+}
+ * </pre>
+ * 
+ * @author jfoley
+ * 
+ */
+public enum Quality {
+	/**
+	 * As fast as possible: jagged shapes and text, nearest-neighbor images.
+	 */
+	LOW(RenderingHints.VALUE_ANTIALIAS_OFF, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF,
+			RenderingHints.VALUE_RENDER_SPEED, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED, RenderingHints.VALUE_STROKE_NORMALIZE),
+	/**
+	 * Jagged shapes, but smooth text so it stays readable.
+	 */
+	MEDIUM(RenderingHints.VALUE_ANTIALIAS_OFF, RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+			RenderingHints.VALUE_RENDER_DEFAULT, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_DEFAULT, RenderingHints.VALUE_STROKE_DEFAULT),
+	/**
+	 * Smooth shapes and text; the default.
+	 */
+	HIGH(RenderingHints.VALUE_ANTIALIAS_ON, RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+			RenderingHints.VALUE_RENDER_DEFAULT, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_DEFAULT, RenderingHints.VALUE_STROKE_DEFAULT),
+	/**
+	 * Everything as nice as Java can make it: smooth images and exact strokes.
+	 */
+	BEST(RenderingHints.VALUE_ANTIALIAS_ON, RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+			RenderingHints.VALUE_RENDER_QUALITY, RenderingHints.VALUE_INTERPOLATION_BICUBIC,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY, RenderingHints.VALUE_STROKE_PURE);
+
+	private static final Quality[] LEVELS = values();
+
+	/**
+	 * The hints for this level, built once.
+	 */
+	private final RenderingHints hints;
+
+	Quality(Object antialias, Object textAntialias, Object rendering, Object interpolation,
+			Object alphaInterpolation, Object strokeControl) {
+		hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, antialias);
+		hints.put(RenderingHints.KEY_TEXT_ANTIALIASING, textAntialias);
+		hints.put(RenderingHints.KEY_RENDERING, rendering);
+		hints.put(RenderingHints.KEY_INTERPOLATION, interpolation);
+		hints.put(RenderingHints.KEY_ALPHA_INTERPOLATION, alphaInterpolation);
+		hints.put(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+	}
+
+	/**
+	 * Set up a graphics object to draw at this level.
+	 * 
+	 * @param g The graphics to change.
+	 */
+	public void apply(Graphics2D g) {
+		g.addRenderingHints(hints);
+	}
+
+	/**
+	 * @return A copy of the hints for this level.
+	 */
+	public RenderingHints getHints() {
+		return (RenderingHints) hints.clone();
+	}
+
+	/**
+	 * @param other Another level.
+	 * @return true if this level is the same as or nicer than other.
+	 */
+	public boolean isAtLeast(Quality other) {
+		return compareTo(other) >= 0;
+	}
+
+	/**
+	 * @return The next faster level, or this if it is already {@link #LOW}.
+	 */
+	public Quality lower() {
+		return LEVELS[Math.max(0, ordinal() - 1)];
+	}
+
+	/**
+	 * @return The next nicer level, or this if it is already {@link #BEST}.
+	 */
+	public Quality higher() {
+		return LEVELS[Math.min(LEVELS.length - 1, ordinal() + 1)];
+	}
+}
@@ -0,0 +1,147 @@
+package me.jjfoley.gfx;
+
+/**
+ * This class watches how long recent frames took to draw and changes the
+ * {@link Quality} to keep up with the frame rate: a step down when frames run
+ * over budget, and (more slowly) a step back up when there is plenty of time
+ * to spare. Waiting for a full window of frames after each change, and
+ * needing a long calm stretch before stepping up, keeps it from flickering
+ * between two levels.
+ * 
+ * <pre>
+ * {@code
+app.setQualityController(new QualityController());
+}
+ * </pre>
+ * 
+ * It is used from the thread drawing frames.
+ * 
+ * @author jfoley
+ * 
+ */
+public class QualityController {
+	/**
+	 * How many frames to look at before deciding, by default.
+	 */
+	public static final int DEFAULT_WINDOW = 30;
+	private final BudgetStepper stepper;
+	private volatile Quality min = Quality.LOW;
+	private volatile Quality max = Quality.HIGH;
+	private volatile Quality level = Quality.HIGH;
+
+	/**
+	 * Create a controller that looks at {@link #DEFAULT_WINDOW} frames.
+	 */
+	public QualityController() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Create a controller.
+	 * 
+	 * @param window How many frames to look at before deciding; more is steadier
+	 *               but slower to react.
+	 */
+	public QualityController(int window) {
+		this.stepper = new BudgetStepper(window, 0.5, 2 * window);
+	}
+
+	/**
+	 * @param fps The frame rate to hold, or 0 (the default) to use the
+	 *            {@link FrameScheduler#getTargetFps()}.
+	 */
+	public void setTargetFps(double fps) {
+		stepper.setTargetFps(fps);
+	}
+
+	/**
+	 * @param min The lowest level to go down to; default {@link Quality#LOW}.
+	 * @param max The highest level to go up to; default {@link Quality#HIGH}.
+	 */
+	public void setRange(Quality min, Quality max) {
+		if (min.compareTo(max) > 0) {
+			throw new IllegalArgumentException(min + " is above " + max);
+		}
+		this.min = min;
+		this.max = max;
+		setLevel(level);
+	}
+
+	/**
+	 * @param down Step down when the slowest 10% of frames use more than this
+	 *             fraction of the time there is to draw: the frame budget, less
+	 *             what update and present take; default 0.9.
+	 * @param up   Step up when they use less than this fraction; default 0.5.
+	 */
+	public void setThresholds(double down, double up) {
+		stepper.setThresholds(down, up);
+	}
+
+	/**
+	 * @param frames How many calm frames in a row before stepping up; default
+	 *               twice the window.
+	 */
+	public void setUpDelay(int frames) {
+		stepper.setUpDelay(frames);
+	}
+
+	/**
+	 * @return The level to draw at right now.
+	 */
+	public Quality getLevel() {
+		return level;
+	}
+
+	/**
+	 * Jump to a level (kept inside the range), and start watching again.
+	 * 
+	 * @param quality The new level.
+	 */
+	public synchronized void setLevel(Quality quality) {
+		Quality q = quality;
+		if (q.compareTo(min) < 0) {
+			q = min;
+		} else if (q.compareTo(max) > 0) {
+			q = max;
+		}
+		level = q;
+		stepper.reset();
+	}
+
+	/**
+	 * @return How many times the level has changed by itself.
+	 */
+	public synchronized long getChanges() {
+		return stepper.getChanges();
+	}
+
+	/**
+	 * Look at one more frame, and maybe change the level.
+	 * 
+	 * @param drawNanos  How long the frame spent clearing and drawing (see
+	 *                   {@link FrameMetrics#getLastDrawNanos()}).
+	 * @param otherNanos How long the rest of the frame's work took, e.g., update
+	 *                   and present; drawing has to fit in what is left.
+	 * @param defaultFps The frame rate to hold if none was set.
+	 * @return The level to draw the next frame at.
+	 */
+	synchronized Quality observe(long drawNanos, long otherNanos, double defaultFps) {
+		switch (stepper.observe(drawNanos, otherNanos, defaultFps)) {
+		case BudgetStepper.DOWN:
+			if (level.compareTo(min) > 0) {
+				level = level.lower();
+				stepper.stepped(false);
+			}
+			break;
+		case BudgetStepper.UP:
+			if (level.compareTo(max) < 0) {
+				level = level.higher();
+				stepper.stepped(true);
+			}
+			break;
+		default:
+			break;
+		}
+		return level;
+	}
+}
@@ -0,0 +1,162 @@
+package me.jjfoley.gfx;
+
+/**
+ * This class watches how long recent frames took to draw and changes the
+ * {@link GFX#setRenderScale(double) render scale} to keep up with the frame
+ * rate. Drawing at scale s touches about s * s as many pixels, so when frames
+ * run over budget it jumps straight to the scale that should fit; when there
+ * is plenty of time to spare it creeps back up a step at a time.
+ * 
+ * <pre>
+ * {@code
+app.setRenderScaleController(new RenderScaleController());
+}
+ * </pre>
+ * 
+ * It is used from the thread drawing frames. Scales are rounded to
+ * {@link #STEP}, so the scale settles instead of wandering.
+ * 
+ * @author jfoley
+ * 
+ */
+public class RenderScaleController {
+	/**
+	 * How many frames to look at before deciding, by default.
+	 */
+	public static final int DEFAULT_WINDOW = 30;
+	/**
+	 * Scales are multiples of this.
+	 */
+	public static final double STEP = 1.0 / 16;
+
+	private final BudgetStepper stepper;
+	private volatile double min = 0.5;
+	private volatile double max = 1.0;
+	private volatile double scale = 1.0;
+
+	/**
+	 * Create a controller that looks at {@link #DEFAULT_WINDOW} frames.
+	 */
+	public RenderScaleController() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Create a controller.
+	 * 
+	 * @param window How many frames to look at before deciding; more is steadier
+	 *               but slower to react.
+	 */
+	public RenderScaleController(int window) {
+		this.stepper = new BudgetStepper(window, 0.6, window);
+	}
+
+	/**
+	 * @param fps The frame rate to hold, or 0 (the default) to use the
+	 *            {@link FrameScheduler#getTargetFps()}.
+	 */
+	public void setTargetFps(double fps) {
+		stepper.setTargetFps(fps);
+	}
+
+	/**
+	 * @param min The lowest scale to go down to; default 0.5.
+	 * @param max The highest scale to go up to; default 1.
+	 */
+	public void setRange(double min, double max) {
+		if (!(min > 0 && min <= max && max <= 1)) {
+			throw new IllegalArgumentException("need 0 < min <= max <= 1: " + min + ", " + max);
+		}
+		this.min = min;
+		this.max = max;
+		setScale(scale);
+	}
+
+	/**
+	 * @return The highest scale this can go up to.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @param down Scale down when the slowest 10% of frames use more than this
+	 *             fraction of the time there is to draw: the frame budget, less
+	 *             what update and present take; default 0.9.
+	 * @param up   Scale up when they use less than this fraction; default 0.6.
+	 */
+	public void setThresholds(double down, double up) {
+		stepper.setThresholds(down, up);
+	}
+
+	/**
+	 * @param frames How many calm frames in a row before scaling up; default the
+	 *               window.
+	 */
+	public void setUpDelay(int frames) {
+		stepper.setUpDelay(frames);
+	}
+
+	/**
+	 * @return The scale to draw at right now.
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Jump to a scale (kept inside the range), and start watching again.
+	 * 
+	 * @param scale The new scale.
+	 */
+	public synchronized void setScale(double scale) {
+		this.scale = clamp(scale);
+		stepper.reset();
+	}
+
+	/**
+	 * @return How many times the scale has changed by itself.
+	 */
+	public synchronized long getChanges() {
+		return stepper.getChanges();
+	}
+
+	/**
+	 * Look at one more frame, and maybe change the scale.
+	 * 
+	 * @param drawNanos  How long the frame spent clearing and drawing (see
+	 *                   {@link FrameMetrics#getLastDrawNanos()}).
+	 * @param otherNanos How long the rest of the frame's work took, e.g., update
+	 *                   and present; drawing has to fit in what is left.
+	 * @param defaultFps The frame rate to hold if none was set.
+	 * @return The scale to draw the next frame at.
+	 */
+	synchronized double observe(long drawNanos, long otherNanos, double defaultFps) {
+		switch (stepper.observe(drawNanos, otherNanos, defaultFps)) {
+		case BudgetStepper.DOWN: {
+			// Aim for the middle of the calm band; time is roughly area.
+			final double goal = stepper.getBudgetNanos() * (stepper.getDownThreshold() + stepper.getUpThreshold()) / 2;
+			final double next = clamp(Math.min(scale - STEP, scale * Math.sqrt(goal / stepper.getSlowNanos())));
+			if (next < scale) {
+				scale = next;
+				stepper.stepped(false);
+			}
+			break;
+		}
+		case BudgetStepper.UP:
+			if (scale < max) {
+				scale = clamp(scale + STEP);
+				stepper.stepped(true);
+			}
+			break;
+		default:
+			break;
+		}
+		return scale;
+	}
+
+	private double clamp(double s) {
+		double q = Math.floor(s / STEP + 1e-9) * STEP;
+		return Math.max(min, Math.min(max, q));
+	}
+}
@@ -0,0 +1,24 @@
+package me.jjfoley.gfx;
+
+/**
+ * Something a {@link GFX} application can be drawn to: either the window
+ * ({@link GFXView}) or an image in memory ({@link OffscreenView}).
+ * 
+ * @author jfoley
+ */
+interface RenderTarget {
+	/**
+	 * @return The width in pixels.
+	 */
+	int getWidth();
+
+	/**
+	 * @return The height in pixels.
+	 */
+	int getHeight();
+
+	/**
+	 * Draw one frame of the application and present it.
+	 */
+	void render();
+}
@@ -0,0 +1,187 @@
+package me.jjfoley.gfx;
+
+/**
+ * This class keeps the most recent measurements (e.g., nanoseconds per frame)
+ * and answers questions like "what was the 99th percentile?" without creating
+ * any objects.
+ * 
+ * It is not thread-safe: record and read it from one thread, e.g., the one
+ * running frames.
+ * 
+ * @author jfoley
+ *
+ */
+public class RollingHistogram {
+	/**
+	 * The most recent samples, as a ring.
+	 */
+	private final long[] samples;
+	/**
+	 * Scratch space for computing percentiles.
+	 */
+	private final long[] scratch;
+	/**
+	 * How many samples have ever been recorded.
+	 */
+	private long total;
+
+	/**
+	 * Create a histogram over the most recent samples.
+	 * 
+	 * @param capacity How many samples to remember.
+	 */
+	public RollingHistogram(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+		}
+		this.samples = new long[capacity];
+		this.scratch = new long[capacity];
+	}
+
+	/**
+	 * Add a measurement, pushing out the oldest one if we are full.
+	 * 
+	 * @param value The measurement.
+	 */
+	public void record(long value) {
+		samples[(int) (total % samples.length)] = value;
+		total++;
+	}
+
+	/**
+	 * Forget all the measurements.
+	 */
+	public void clear() {
+		total = 0;
+	}
+
+	/**
+	 * @return How many samples can be remembered.
+	 */
+	public int getCapacity() {
+		return samples.length;
+	}
+
+	/**
+	 * @return How many samples are remembered right now.
+	 */
+	public int size() {
+		return (int) Math.min(total, samples.length);
+	}
+
+	/**
+	 * @return How many samples have ever been recorded.
+	 */
+	public long getTotalCount() {
+		return total;
+	}
+
+	/**
+	 * @return The most recent sample, or 0 if there are none.
+	 */
+	public long last() {
+		if (total == 0) {
+			return 0;
+		}
+		return samples[(int) ((total - 1) % samples.length)];
+	}
+
+	/**
+	 * @return The largest remembered sample, or 0 if there are none.
+	 */
+	public long max() {
+		int n = size();
+		if (n == 0) {
+			return 0;
+		}
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * @return The average of the remembered samples, or 0 if there are none.
+	 */
+	public double mean() {
+		int n = size();
+		if (n == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += samples[i];
+		}
+		return sum / n;
+	}
+
+	/**
+	 * @return The median of the remembered samples.
+	 */
+	public long p50() {
+		return percentile(0.5);
+	}
+
+	/**
+	 * @return The 99th percentile of the remembered samples.
+	 */
+	public long p99() {
+		return percentile(0.99);
+	}
+
+	/**
+	 * Find the sample that a given fraction of samples are less than or equal to.
+	 * 
+	 * @param p The fraction, from 0 to 1, e.g., 0.5 for the median.
+	 * @return That sample, or 0 if there are none.
+	 */
+	public long percentile(double p) {
+		if (p < 0 || p > 1) {
+			throw new IllegalArgumentException("p must be from 0 to 1: " + p);
+		}
+		int n = size();
+		if (n == 0) {
+			return 0;
+		}
+		System.arraycopy(samples, 0, scratch, 0, n);
+		int k = (int) Math.ceil(p * n) - 1;
+		return select(scratch, n, Math.max(0, k));
+	}
+
+	/**
+	 * Quickselect: find the k-th smallest of the first n values, in place.
+	 */
+	private static long select(long[] a, int n, int k) {
+		int lo = 0;
+		int hi = n - 1;
+		while (lo < hi) {
+			long pivot = a[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (a[i] < pivot) {
+					i++;
+				}
+				while (a[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					long tmp = a[i];
+					a[i] = a[j];
+					a[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				break;
+			}
+		}
+		return a[k];
+	}
+}
@@ -0,0 +1,114 @@
+package me.jjfoley.gfx;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.VolatileImage;
+
+/**
+ * The picture a frame is drawn into when the render scale is below 1, before
+ * it is stretched to the window. It is made big enough for the largest scale
+ * that can be asked for, and a smaller scale only uses its top-left corner, so
+ * changing the scale every frame never allocates; only a new window size (or
+ * a new screen) does.
+ * 
+ * @author jfoley
+ * 
+ */
+class ScaledFrame {
+	private VolatileImage image;
+	/**
+	 * The window size and largest scale {@link #image} was made for.
+	 */
+	private int width;
+	private int height;
+	private double maxScale;
+	/**
+	 * How many times {@link #image} has been made.
+	 */
+	private long allocations;
+
+	/**
+	 * Draw a frame at a lower resolution and stretch it onto g.
+	 * 
+	 * @param g        Where the frame should end up.
+	 * @param width    The width of the frame.
+	 * @param height   The height of the frame.
+	 * @param scale    The render scale to draw at, below 1.
+	 * @param maxScale The largest scale this could be asked for, to size the
+	 *                 picture.
+	 * @param upscale  How to stretch it.
+	 * @param painter  Draws the frame, in frame-sized coordinates.
+	 */
+	void paint(Graphics2D g, int width, int height, double scale, double maxScale, Upscale upscale,
+			FramePainter painter) {
+		final int sw = Math.max(1, (int) Math.ceil(width * scale));
+		final int sh = Math.max(1, (int) Math.ceil(height * scale));
+		final GraphicsConfiguration gc = g.getDeviceConfiguration();
+		do {
+			if (image == null || width != this.width || height != this.height || maxScale != this.maxScale
+					|| image.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+				allocate(gc, width, height, maxScale);
+			}
+			final Graphics2D sg = image.createGraphics();
+			try {
+				sg.clipRect(0, 0, sw, sh);
+				sg.scale(sw / (double) width, sh / (double) height);
+				painter.paint(sg, width, height);
+			} finally {
+				sg.dispose();
+			}
+			// Video memory can be taken back at any time; if so, draw again.
+		} while (image.contentsLost());
+
+		final Object before = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, upscale.hint);
+		g.drawImage(image, 0, 0, width, height, 0, 0, sw, sh, null);
+		if (before != null) {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, before);
+		}
+	}
+
+	private void allocate(GraphicsConfiguration gc, int width, int height, double maxScale) {
+		if (image != null) {
+			image.flush();
+		}
+		image = gc.createCompatibleVolatileImage(Math.max(1, (int) Math.ceil(width * maxScale)),
+				Math.max(1, (int) Math.ceil(height * maxScale)));
+		this.width = width;
+		this.height = height;
+		this.maxScale = maxScale;
+		allocations++;
+	}
+
+	/**
+	 * @return How many times the picture has been made; it should only go up
+	 *         when the window changes size.
+	 */
+	long getAllocations() {
+		return allocations;
+	}
+
+	/**
+	 * Give back the picture, e.g., when the scale goes back to 1.
+	 */
+	void release() {
+		if (image != null) {
+			image.flush();
+			image = null;
+		}
+	}
+
+	/**
+	 * Something that can draw one frame.
+	 */
+	@FunctionalInterface
+	interface FramePainter {
+		/**
+		 * @param g      The graphics to draw with.
+		 * @param width  The width of the frame.
+		 * @param height The height of the frame.
+		 */
+		void paint(Graphics2D g, int width, int height);
+	}
+}
@@ -0,0 +1,372 @@
+package me.jjfoley.gfx;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A spatial index answers "what is here?" quickly, without looking at every
+ * object: which objects were clicked, which ones overlap a rectangle, or which
+ * one is closest to a point. Use {@link UniformGrid} when objects are all
+ * about the same size, or {@link LooseQuadtree} when sizes vary a lot.
+ * 
+ * Objects are numbered by you, from 0 up (e.g., their position in a list), and
+ * described by their bounding rectangle. When an object moves, call
+ * {@link #move}; it is cheap. Queries call you back with the numbers of the
+ * objects they find, and do not create any objects:
+ * 
+ * <pre>
+ * {@code
+SpatialIndex index = new UniformGrid(getWidth(), getHeight(), 32);
+for (int i = 0; i < balls.size(); i++) {
+	index.insert(i, balls.get(i).getBounds());
+}
+...
+IntPoint click = processClick();
+if (click != null) {
+	index.queryPoint(click.x, click.y, id -> {
+		balls.get(id).pop();
+		return true; // keep looking
+	});
+}
+}
+ * </pre>
+ * 
+ * It is not thread-safe.
+ * 
+ * @author jfoley
+ *
+ */
+public abstract class SpatialIndex {
+	/**
+	 * Called for each object a query finds.
+	 */
+	@FunctionalInterface
+	public interface Visitor {
+		/**
+		 * @param id The number of an object that was found.
+		 * @return true to keep looking, false to stop the query.
+		 */
+		boolean visit(int id);
+	}
+
+	/**
+	 * Bounds of every object: minX, minY, maxX, maxY.
+	 */
+	double[] box = new double[4 * 64];
+	/**
+	 * Per object: true if it is in the index.
+	 */
+	boolean[] present = new boolean[64];
+	/**
+	 * Per object: the query that last saw it, so objects in many cells are only
+	 * reported once.
+	 */
+	int[] seen = new int[64];
+	/**
+	 * Counts queries, for {@link #seen}.
+	 */
+	int queryStamp;
+	private int count;
+
+	// Scratch for nearest(): a query in progress.
+	private double nearX;
+	private double nearY;
+	private double nearBest;
+	private int nearId;
+	private final Visitor nearVisitor = this::visitNearest;
+
+	/**
+	 * @return How many objects are in the index.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param id The number of an object.
+	 * @return true if it is in the index.
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < present.length && present[id];
+	}
+
+	/**
+	 * Add an object.
+	 * 
+	 * @param id     Its number, from 0 up; reuse numbers of removed objects.
+	 * @param bounds Its bounding rectangle.
+	 */
+	public void insert(int id, Rectangle2D bounds) {
+		insert(id, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+	}
+
+	/**
+	 * Add an object.
+	 * 
+	 * @param id   Its number, from 0 up; reuse numbers of removed objects.
+	 * @param minX The left edge.
+	 * @param minY The top edge.
+	 * @param maxX The right edge.
+	 * @param maxY The bottom edge.
+	 */
+	public void insert(int id, double minX, double minY, double maxX, double maxY) {
+		if (id < 0) {
+			throw new IllegalArgumentException("id must not be negative: " + id);
+		}
+		if (contains(id)) {
+			throw new IllegalArgumentException("id is already in the index: " + id);
+		}
+		ensureCapacity(id + 1);
+		setBox(id, minX, minY, maxX, maxY);
+		present[id] = true;
+		count++;
+		link(id);
+	}
+
+	/**
+	 * Change where an object is.
+	 * 
+	 * @param id     Its number.
+	 * @param bounds Its new bounding rectangle.
+	 */
+	public void move(int id, Rectangle2D bounds) {
+		move(id, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+	}
+
+	/**
+	 * Change where an object is.
+	 * 
+	 * @param id   Its number.
+	 * @param minX The new left edge.
+	 * @param minY The new top edge.
+	 * @param maxX The new right edge.
+	 * @param maxY The new bottom edge.
+	 */
+	public void move(int id, double minX, double minY, double maxX, double maxY) {
+		if (!contains(id)) {
+			throw new IllegalArgumentException("id is not in the index: " + id);
+		}
+		relink(id, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Take an object out.
+	 * 
+	 * @param id Its number.
+	 * @return false if it was not in the index.
+	 */
+	public boolean remove(int id) {
+		if (!contains(id)) {
+			return false;
+		}
+		unlink(id);
+		present[id] = false;
+		count--;
+		return true;
+	}
+
+	/**
+	 * Take every object out.
+	 */
+	public void clear() {
+		for (int id = 0; id < present.length; id++) {
+			if (present[id]) {
+				remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Find every object whose bounds contain a point.
+	 * 
+	 * @param x       The x coordinate, e.g., of a click.
+	 * @param y       The y coordinate.
+	 * @param visitor Called with each object found.
+	 */
+	public void queryPoint(double x, double y, Visitor visitor) {
+		queryRect(x, y, x, y, visitor);
+	}
+
+	/**
+	 * Find every object whose bounds contain a point.
+	 * 
+	 * @param p       The point, e.g., from {@link GFX#processClick()}.
+	 * @param visitor Called with each object found.
+	 */
+	public void queryPoint(IntPoint p, Visitor visitor) {
+		queryRect(p.x, p.y, p.x, p.y, visitor);
+	}
+
+	/**
+	 * Find every object whose bounds overlap a rectangle.
+	 * 
+	 * @param area    The rectangle.
+	 * @param visitor Called with each object found.
+	 */
+	public void queryRect(Rectangle2D area, Visitor visitor) {
+		queryRect(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(), visitor);
+	}
+
+	/**
+	 * Find every object whose bounds overlap a rectangle (touching counts).
+	 * 
+	 * @param minX    The left edge.
+	 * @param minY    The top edge.
+	 * @param maxX    The right edge.
+	 * @param maxY    The bottom edge.
+	 * @param visitor Called with each object found.
+	 * @return false if the visitor stopped the query.
+	 */
+	public abstract boolean queryRect(double minX, double minY, double maxX, double maxY, Visitor visitor);
+
+	/**
+	 * Find the object closest to a point: the one whose bounds are the shortest
+	 * distance away (zero if the point is inside).
+	 * 
+	 * @param x           The x coordinate.
+	 * @param y           The y coordinate.
+	 * @param maxDistance Do not look further than this.
+	 * @return The closest object, or -1 if none is within maxDistance.
+	 */
+	public int nearest(double x, double y, double maxDistance) {
+		nearX = x;
+		nearY = y;
+		nearId = -1;
+		nearBest = maxDistance * maxDistance;
+		double radius = Math.min(maxDistance, initialSearchRadius());
+		while (true) {
+			queryRect(x - radius, y - radius, x + radius, y + radius, nearVisitor);
+			// Anything closer than radius is inside the square we searched.
+			if (nearId >= 0 && nearBest <= radius * radius) {
+				return nearId;
+			}
+			if (radius >= maxDistance) {
+				return nearId;
+			}
+			radius = Math.min(maxDistance, radius * 2);
+		}
+	}
+
+	private boolean visitNearest(int id) {
+		final int b = 4 * id;
+		double dx = Math.max(0, Math.max(box[b] - nearX, nearX - box[b + 2]));
+		double dy = Math.max(0, Math.max(box[b + 1] - nearY, nearY - box[b + 3]));
+		double d2 = dx * dx + dy * dy;
+		if (d2 <= nearBest) {
+			nearBest = d2;
+			nearId = id;
+		}
+		return true;
+	}
+
+	/**
+	 * @return How far {@link #nearest} looks first, e.g., one cell.
+	 */
+	abstract double initialSearchRadius();
+
+	/**
+	 * Put a new object into the structure; {@link #box} is already filled in.
+	 */
+	abstract void link(int id);
+
+	/**
+	 * Take an object out of the structure.
+	 */
+	abstract void unlink(int id);
+
+	/**
+	 * Move an object in the structure and update {@link #box}.
+	 */
+	void relink(int id, double minX, double minY, double maxX, double maxY) {
+		unlink(id);
+		setBox(id, minX, minY, maxX, maxY);
+		link(id);
+	}
+
+	final void setBox(int id, double minX, double minY, double maxX, double maxY) {
+		final int b = 4 * id;
+		box[b] = Math.min(minX, maxX);
+		box[b + 1] = Math.min(minY, maxY);
+		box[b + 2] = Math.max(minX, maxX);
+		box[b + 3] = Math.max(minY, maxY);
+	}
+
+	/**
+	 * Does an object overlap a rectangle?
+	 */
+	final boolean overlaps(int id, double minX, double minY, double maxX, double maxY) {
+		final int b = 4 * id;
+		return box[b] <= maxX && box[b + 2] >= minX && box[b + 1] <= maxY && box[b + 3] >= minY;
+	}
+
+	/**
+	 * Start a query: objects are reported at most once per stamp.
+	 */
+	final int nextStamp() {
+		if (++queryStamp == 0) {
+			Arrays.fill(seen, 0);
+			queryStamp = 1;
+		}
+		return queryStamp;
+	}
+
+	/**
+	 * Make room for object numbers below n.
+	 */
+	void ensureCapacity(int n) {
+		if (n <= present.length) {
+			return;
+		}
+		int size = Math.max(n, present.length * 2);
+		box = Arrays.copyOf(box, 4 * size);
+		present = Arrays.copyOf(present, size);
+		seen = Arrays.copyOf(seen, size);
+	}
+
+	/**
+	 * Lists of object numbers, one per cell, for the subclasses.
+	 */
+	static final class Buckets {
+		private int[][] items;
+		private int[] sizes;
+
+		Buckets(int cells) {
+			items = new int[cells][];
+			sizes = new int[cells];
+		}
+
+		int size(int cell) {
+			return sizes[cell];
+		}
+
+		int get(int cell, int i) {
+			return items[cell][i];
+		}
+
+		void add(int cell, int id) {
+			int[] list = items[cell];
+			int n = sizes[cell];
+			if (list == null) {
+				list = new int[4];
+				items[cell] = list;
+			} else if (n == list.length) {
+				list = Arrays.copyOf(list, n * 2);
+				items[cell] = list;
+			}
+			list[n] = id;
+			sizes[cell] = n + 1;
+		}
+
+		void remove(int cell, int id) {
+			int[] list = items[cell];
+			int n = sizes[cell];
+			for (int i = 0; i < n; i++) {
+				if (list[i] == id) {
+					list[i] = list[n - 1];
+					sizes[cell] = n - 1;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * This class flips through a list of {@link SpriteAtlas} handles over time.
+ * Call {@link #update(double)} from {@link GFX#update} and draw
+ * {@link #getHandle()}; neither allocates anything.
+ * 
+ * <pre>
+ * {@code
+SpriteAnimation walk = new SpriteAnimation(atlas.addSheet(sheet, 32, 32), 10);
+...
+public void update(double dt) {
+	walk.update(dt);
+}
+public void draw(Graphics2D g) {
+	walk.draw(g, atlas, x, y);
+}
+}
+ * </pre>
+ * 
+ * For many things that share one animation (but started at different times),
+ * keep one animation and a time for each thing, and ask
+ * {@link #getHandleAt(double)}.
+ * 
+ * @author jfoley
+ * 
+ */
+public class SpriteAnimation {
+	private final int[] frames;
+	private final double frameSeconds;
+	private boolean looping = true;
+	private double speed = 1.0;
+	/**
+	 * Seconds since the start, already multiplied by {@link #speed}.
+	 */
+	private double time;
+
+	/**
+	 * Create a looping animation.
+	 * 
+	 * @param frames The sprite handles to show, in order.
+	 * @param fps    How many frames to show per second.
+	 */
+	public SpriteAnimation(int[] frames, double fps) {
+		if (frames.length == 0) {
+			throw new IllegalArgumentException("An animation needs at least one frame.");
+		}
+		if (!(fps > 0)) {
+			throw new IllegalArgumentException("fps must be positive: " + fps);
+		}
+		this.frames = Arrays.copyOf(frames, frames.length);
+		this.frameSeconds = 1.0 / fps;
+	}
+
+	/**
+	 * @param looping true (the default) to start over after the last frame;
+	 *                false to stay on it.
+	 */
+	public void setLooping(boolean looping) {
+		this.looping = looping;
+	}
+
+	/**
+	 * @param speed How fast to play: 1 is normal, 2 is double speed, 0 is paused.
+	 */
+	public void setSpeed(double speed) {
+		if (speed < 0) {
+			throw new IllegalArgumentException("speed must not be negative: " + speed);
+		}
+		this.speed = speed;
+	}
+
+	/**
+	 * Move the animation forward.
+	 * 
+	 * @param dt How many seconds passed, as given to {@link GFX#update}.
+	 */
+	public void update(double dt) {
+		time += dt * speed;
+		final double length = frames.length * frameSeconds;
+		if (time >= length) {
+			// Keep the time small so it stays precise in long sessions.
+			time = looping ? time % length : length;
+		}
+	}
+
+	/**
+	 * Go back to the first frame.
+	 */
+	public void reset() {
+		time = 0;
+	}
+
+	/**
+	 * @return true if a non-looping animation has reached its last frame.
+	 */
+	public boolean isFinished() {
+		return !looping && time >= frames.length * frameSeconds;
+	}
+
+	/**
+	 * @return Which frame is showing, from 0.
+	 */
+	public int getFrame() {
+		return frameAt(time);
+	}
+
+	/**
+	 * @return The sprite handle to draw now.
+	 */
+	public int getHandle() {
+		return frames[frameAt(time)];
+	}
+
+	/**
+	 * @param seconds How long something has been playing this animation (at
+	 *                normal speed).
+	 * @return The sprite handle it should show.
+	 */
+	public int getHandleAt(double seconds) {
+		return frames[frameAt(seconds)];
+	}
+
+	/**
+	 * @return How many frames there are.
+	 */
+	public int getFrameCount() {
+		return frames.length;
+	}
+
+	/**
+	 * Draw the current frame with its top-left corner at (x, y).
+	 * 
+	 * @param g     The graphics to draw to.
+	 * @param atlas The atlas the handles came from.
+	 * @param x     Where the left edge goes.
+	 * @param y     Where the top edge goes.
+	 */
+	public void draw(Graphics2D g, SpriteAtlas atlas, int x, int y) {
+		atlas.draw(g, getHandle(), x, y);
+	}
+
+	private int frameAt(double seconds) {
+		if (seconds <= 0) {
+			return 0;
+		}
+		long n = (long) (seconds / frameSeconds);
+		if (looping) {
+			return (int) (n % frames.length);
+		}
+		return (int) Math.min(n, frames.length - 1);
+	}
+}
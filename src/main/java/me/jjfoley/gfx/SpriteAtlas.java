@@ -0,0 +1,369 @@
+package me.jjfoley.gfx;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class packs many small pictures (sprites) into a few big images
+ * (pages), so drawing hundreds of sprites a frame switches between a few
+ * images instead of hundreds. Each sprite gets an int handle when it is added;
+ * draw it by handle, or draw a whole batch at once from arrays.
+ * 
+ * <pre>
+ * {@code
+SpriteAtlas atlas = new SpriteAtlas();
+int tree = atlas.add(getAssets().get("tree.png"));
+int[] walk = atlas.addSheet(getAssets().get("walk.png"), 32, 32);
+...
+public void draw(Graphics2D g) {
+	atlas.drawBatch(g, handles, xs, ys, count);
+}
+}
+ * </pre>
+ * 
+ * Add sprites before drawing, or from the thread that draws. Pages are only
+ * ever drawn into (never read pixel by pixel), so Java can keep a copy of them
+ * in video memory.
+ * 
+ * @author jfoley
+ * 
+ */
+public class SpriteAtlas {
+	/**
+	 * The default width and height of a page, in pixels.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+	/**
+	 * Empty pixels left around each sprite, so smooth scaling doesn't blend in
+	 * its neighbors.
+	 */
+	private static final int PADDING = 1;
+
+	/**
+	 * One page, filled shelf by shelf: a shelf is a row as tall as the first
+	 * sprite put on it, and sprites go left to right along it.
+	 */
+	private static final class Page {
+		final BufferedImage image;
+		/**
+		 * The top, height and used width of each shelf.
+		 */
+		final IntList shelfY = new IntList();
+		final IntList shelfHeight = new IntList();
+		final IntList shelfUsed = new IntList();
+		/**
+		 * The bottom of the last shelf.
+		 */
+		int top;
+
+		Page(int width, int height) {
+			this.image = ImageAssets.createCompatible(width, height);
+		}
+
+		/**
+		 * Find room for a sprite (with padding) on this page.
+		 * 
+		 * @return x and y packed with {@link IntPoint#pack}, or -1 if it doesn't
+		 *         fit.
+		 */
+		long place(int w, int h) {
+			final int width = image.getWidth();
+			// The shelf that fits with the least height left over.
+			int best = -1;
+			for (int i = 0; i < shelfY.size(); i++) {
+				int sh = shelfHeight.get(i);
+				if (sh >= h && shelfUsed.get(i) + w <= width
+						&& (best < 0 || sh < shelfHeight.get(best))) {
+					best = i;
+				}
+			}
+			if (best < 0) {
+				if (top + h > image.getHeight() || w > width) {
+					return -1;
+				}
+				best = shelfY.size();
+				shelfY.add(top);
+				shelfHeight.add(h);
+				shelfUsed.add(0);
+				top += h;
+			}
+			final int x = shelfUsed.get(best);
+			shelfUsed.set(best, x + w);
+			return IntPoint.pack(x, shelfY.get(best));
+		}
+	}
+
+	private final int pageSize;
+	private final List<Page> pages = new ArrayList<>();
+
+	/**
+	 * Where each sprite is, by handle.
+	 */
+	private final IntList spritePage = new IntList();
+	private final IntList spriteX = new IntList();
+	private final IntList spriteY = new IntList();
+	private final IntList spriteWidth = new IntList();
+	private final IntList spriteHeight = new IntList();
+
+	/**
+	 * Reused by {@link #drawBatch} to put a batch in page order.
+	 */
+	private int[] order = new int[0];
+	private int[] pageCounts = new int[0];
+	private long pageSwitches;
+
+	/**
+	 * Create an atlas with {@link #DEFAULT_PAGE_SIZE} pages.
+	 */
+	public SpriteAtlas() {
+		this(DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Create an atlas.
+	 * 
+	 * @param pageSize The width and height of each page, in pixels. Sprites
+	 *                 bigger than this get a page of their own.
+	 */
+	public SpriteAtlas(int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Add a whole image as a sprite.
+	 * 
+	 * @param image The picture; it is copied, so you can drop it afterwards.
+	 * @return The handle of the new sprite.
+	 */
+	public int add(BufferedImage image) {
+		return add(image, 0, 0, image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Add part of an image as a sprite.
+	 * 
+	 * @param image  The picture; it is copied.
+	 * @param x      The left edge of the part to copy.
+	 * @param y      The top edge of the part to copy.
+	 * @param width  The width of the part.
+	 * @param height The height of the part.
+	 * @return The handle of the new sprite.
+	 */
+	public int add(BufferedImage image, int x, int y, int width, int height) {
+		if (width < 1 || height < 1 || x < 0 || y < 0 || x + width > image.getWidth()
+				|| y + height > image.getHeight()) {
+			throw new IllegalArgumentException(
+					"Not inside the image: " + x + "," + y + " " + width + "x" + height);
+		}
+		final int pw = width + 2 * PADDING;
+		final int ph = height + 2 * PADDING;
+		int page = -1;
+		long spot = -1;
+		for (int i = 0; i < pages.size() && spot < 0; i++) {
+			spot = pages.get(i).place(pw, ph);
+			page = i;
+		}
+		if (spot < 0) {
+			page = pages.size();
+			Page p = new Page(Math.max(pageSize, pw), Math.max(pageSize, ph));
+			pages.add(p);
+			spot = p.place(pw, ph);
+		}
+		final int dx = IntPoint.unpackX(spot) + PADDING;
+		final int dy = IntPoint.unpackY(spot) + PADDING;
+
+		Graphics2D g = pages.get(page).image.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(image, dx, dy, dx + width, dy + height, x, y, x + width, y + height, null);
+		} finally {
+			g.dispose();
+		}
+
+		final int handle = spritePage.size();
+		spritePage.add(page);
+		spriteX.add(dx);
+		spriteY.add(dy);
+		spriteWidth.add(width);
+		spriteHeight.add(height);
+		return handle;
+	}
+
+	/**
+	 * Cut a sprite sheet into equal cells and add each one, left to right, then
+	 * top to bottom. Leftover pixels at the right and bottom are skipped.
+	 * 
+	 * @param sheet      The sprite sheet.
+	 * @param cellWidth  The width of each cell.
+	 * @param cellHeight The height of each cell.
+	 * @return The handles, in order; good for a {@link SpriteAnimation}.
+	 */
+	public int[] addSheet(BufferedImage sheet, int cellWidth, int cellHeight) {
+		if (cellWidth < 1 || cellHeight < 1) {
+			throw new IllegalArgumentException("cells must be at least 1x1: " + cellWidth + "x" + cellHeight);
+		}
+		final int cols = sheet.getWidth() / cellWidth;
+		final int rows = sheet.getHeight() / cellHeight;
+		int[] handles = new int[cols * rows];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				handles[r * cols + c] = add(sheet, c * cellWidth, r * cellHeight, cellWidth, cellHeight);
+			}
+		}
+		return handles;
+	}
+
+	/**
+	 * @return How many sprites have been added.
+	 */
+	public int size() {
+		return spritePage.size();
+	}
+
+	/**
+	 * @param handle A sprite.
+	 * @return Its width in pixels.
+	 */
+	public int getWidth(int handle) {
+		return spriteWidth.get(handle);
+	}
+
+	/**
+	 * @param handle A sprite.
+	 * @return Its height in pixels.
+	 */
+	public int getHeight(int handle) {
+		return spriteHeight.get(handle);
+	}
+
+	/**
+	 * @param handle A sprite.
+	 * @return Which page it is on.
+	 */
+	public int getPage(int handle) {
+		return spritePage.get(handle);
+	}
+
+	/**
+	 * @return How many pages there are.
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * @param page Which page.
+	 * @return The image behind it; do not change it.
+	 */
+	public BufferedImage getPageImage(int page) {
+		return pages.get(page).image;
+	}
+
+	/**
+	 * @return How many times drawing switched from one page to another, over
+	 *         every batch so far.
+	 */
+	public long getPageSwitches() {
+		return pageSwitches;
+	}
+
+	/**
+	 * Draw one sprite with its top-left corner at (x, y).
+	 * 
+	 * @param g      The graphics to draw to.
+	 * @param handle Which sprite.
+	 * @param x      Where the left edge goes.
+	 * @param y      Where the top edge goes.
+	 */
+	public void draw(Graphics2D g, int handle, int x, int y) {
+		final int sx = spriteX.get(handle);
+		final int sy = spriteY.get(handle);
+		final int w = spriteWidth.get(handle);
+		final int h = spriteHeight.get(handle);
+		g.drawImage(pages.get(spritePage.get(handle)).image, x, y, x + w, y + h, sx, sy, sx + w, sy + h, null);
+	}
+
+	/**
+	 * Draw many sprites: sprite {@code handles[i]} with its top-left corner at
+	 * ({@code xs[i]}, {@code ys[i]}), for i from 0 to count. They are drawn one
+	 * page at a time, so each page is switched to only once; sprites on the
+	 * same page keep their order, but where sprites from different pages
+	 * overlap, the one on the lower page ends up underneath. Nothing is
+	 * allocated once the batch size has been seen before.
+	 * 
+	 * @param g       The graphics to draw to.
+	 * @param handles Which sprite each one is.
+	 * @param xs      Where each left edge goes.
+	 * @param ys      Where each top edge goes.
+	 * @param count   How many to draw.
+	 */
+	public void drawBatch(Graphics2D g, int[] handles, int[] xs, int[] ys, int count) {
+		if (count <= 0) {
+			return;
+		}
+		final int numPages = pages.size();
+		if (numPages == 1) {
+			drawRange(g, 0, handles, xs, ys, null, 0, count);
+			pageSwitches++;
+			return;
+		}
+
+		// A counting sort of the batch by page, which keeps the order within
+		// a page.
+		if (pageCounts.length < numPages + 1) {
+			pageCounts = new int[numPages + 1];
+		}
+		if (order.length < count) {
+			order = new int[Math.max(count, order.length * 2)];
+		}
+		final int[] counts = pageCounts;
+		Arrays.fill(counts, 0, numPages + 1, 0);
+		for (int i = 0; i < count; i++) {
+			counts[spritePage.get(handles[i]) + 1]++;
+		}
+		for (int p = 0; p < numPages; p++) {
+			counts[p + 1] += counts[p];
+		}
+		for (int i = 0; i < count; i++) {
+			order[counts[spritePage.get(handles[i])]++] = i;
+		}
+		// Now counts[p] is where page p ends.
+		int start = 0;
+		for (int p = 0; p < numPages; p++) {
+			final int end = counts[p];
+			if (end > start) {
+				drawRange(g, p, handles, xs, ys, order, start, end);
+				pageSwitches++;
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Draw part of a batch that is all on one page.
+	 * 
+	 * @param order Which batch entries to draw, or null for start to end as is.
+	 */
+	private void drawRange(Graphics2D g, int page, int[] handles, int[] xs, int[] ys, int[] order, int start,
+			int end) {
+		final BufferedImage image = pages.get(page).image;
+		for (int k = start; k < end; k++) {
+			final int i = order == null ? k : order[k];
+			final int handle = handles[i];
+			final int sx = spriteX.get(handle);
+			final int sy = spriteY.get(handle);
+			final int w = spriteWidth.get(handle);
+			final int h = spriteHeight.get(handle);
+			final int x = xs[i];
+			final int y = ys[i];
+			g.drawImage(image, x, y, x + w, y + h, sx, sy, sx + w, sy + h, null);
+		}
+	}
+}
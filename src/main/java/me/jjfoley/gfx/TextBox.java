@@ -3,7 +3,10 @@ package me.jjfoley.gfx;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A class that simplifies drawing of text in Java.
@@ -156,16 +159,213 @@ public class TextBox {
         return new Rectangle2D.Double(0, 0, measured.getWidth(), measured.getHeight());
     }
 
+    /**
+     * Measure text with the shared cache, for other classes in this package.
+     * 
+     * @param text The text to measure.
+     * @param font The font it will be drawn with.
+     * @return Its bounds relative to the baseline: y is negative (the ascent).
+     *         Shared, so do not change it.
+     */
+    static Rectangle2D measureText(String text, Font font) {
+        return FontMeasuring.getBounds(text, font);
+    }
+
+    /**
+     * How many measurements were answered from the cache (or the shortcut for
+     * numbers) since the program started?
+     * 
+     * @return The number of cache hits.
+     */
+    public static long getMeasureCacheHits() {
+        return FontMeasuring.hits.sum();
+    }
+
+    /**
+     * How many measurements actually had to ask Java to measure text?
+     * 
+     * @return The number of cache misses.
+     */
+    public static long getMeasureCacheMisses() {
+        return FontMeasuring.misses.sum();
+    }
+
+    /**
+     * Change how many (font, text) measurements are remembered; the least
+     * recently used are forgotten first. Each font's digit widths count as one
+     * measurement. The default is 4096.
+     * 
+     * @param entries The number of measurements to remember, or 0 for none.
+     */
+    public static void setMeasureCacheSize(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("entries must not be negative: " + entries);
+        }
+        FontMeasuring.perStripe = (entries + FontMeasuring.STRIPES - 1) / FontMeasuring.STRIPES;
+        for (FontMeasuring.Stripe stripe : FontMeasuring.stripes) {
+            stripe.trim();
+        }
+    }
+
     /**
      * We trick Java into measuring text before we are draw it by creating a single
-     * pixel and "drawing" to that.
+     * pixel and "drawing" to that. Each thread gets its own pixel, so threads do
+     * not wait on each other, and recent answers are kept in a cache that is split
+     * into stripes, each with its own lock.
      */
     private static class FontMeasuring {
-        private static BufferedImage forGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
-        private static Graphics2D forMeasuring = forGraphics.createGraphics();
+        private static final ThreadLocal<Graphics2D> forMeasuring = ThreadLocal
+                .withInitial(() -> new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR).createGraphics());
+
+        static final int STRIPES = 16;
+        static final Stripe[] stripes = new Stripe[STRIPES];
+        static volatile int perStripe = 4096 / STRIPES;
+        static final LongAdder hits = new LongAdder();
+        static final LongAdder misses = new LongAdder();
+
+        /**
+         * Characters that may appear in numbers, for the {@link Digits} shortcut.
+         * Each font's {@link Digits} are cached with this as their text; it is
+         * numeric itself, so it is never cached as a plain measurement.
+         */
+        private static final String NUMERIC = "0123456789+-.,:%";
+
+        static {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        private static Rectangle2D getBounds(String text, Font font) {
+            // With the cache turned off, measuring every digit would be slower.
+            final boolean numeric = perStripe > 0 && isNumeric(text);
+            final String key = numeric ? NUMERIC : text;
+            int hash = 31 * font.hashCode() + key.hashCode();
+            Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+            Object found = stripe.get(font, key, hash);
+            if (found != null) {
+                hits.increment();
+                return numeric ? ((Digits) found).getBounds(text) : (Rectangle2D) found;
+            }
+            misses.increment();
+            if (numeric) {
+                Digits d = new Digits(font);
+                stripe.put(font, key, hash, d);
+                return d.getBounds(text);
+            }
+            Rectangle2D bounds = measure(text, font);
+            stripe.put(font, text, hash, bounds);
+            return bounds;
+        }
+
+        private static Rectangle2D measure(String text, Font font) {
+            Graphics2D g = forMeasuring.get();
+            return g.getFontMetrics(font).getStringBounds(text, g);
+        }
+
+        private static boolean isNumeric(String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (NUMERIC.indexOf(text.charAt(i)) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Numbers change every frame in a HUD, so instead of caching each one, we
+         * measure every digit once per font and add up their widths.
+         */
+        private static class Digits {
+            private final float[] widths = new float[NUMERIC.length()];
+            private final double y;
+            private final double height;
+
+            Digits(Font font) {
+                for (int i = 0; i < widths.length; i++) {
+                    widths[i] = (float) measure(NUMERIC.substring(i, i + 1), font).getWidth();
+                }
+                Rectangle2D zero = measure("0", font);
+                this.y = zero.getY();
+                this.height = zero.getHeight();
+            }
+
+            Rectangle2D getBounds(String text) {
+                double width = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    width += widths[NUMERIC.indexOf(text.charAt(i))];
+                }
+                return new Rectangle2D.Double(0, y, width, height);
+            }
+        }
+
+        /**
+         * The key for a cached measurement.
+         */
+        private static final class Key {
+            Font font;
+            String text;
+            int hash;
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Key)) {
+                    return false;
+                }
+                Key other = (Key) o;
+                return hash == other.hash && font.equals(other.font) && text.equals(other.text);
+            }
+        }
+
+        /**
+         * One part of the cache: a least-recently-used map with its own lock. The
+         * values are {@link Rectangle2D} bounds, or {@link Digits} for a font.
+         */
+        private static final class Stripe {
+            private final Key probe = new Key();
+            private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                    return size() > perStripe;
+                }
+            };
+
+            synchronized Object get(Font font, String text, int hash) {
+                probe.font = font;
+                probe.text = text;
+                probe.hash = hash;
+                Object found = entries.get(probe);
+                probe.font = null;
+                probe.text = null;
+                return found;
+            }
+
+            synchronized void put(Font font, String text, int hash, Object value) {
+                if (perStripe == 0) {
+                    return;
+                }
+                Key key = new Key();
+                key.font = font;
+                key.text = text;
+                key.hash = hash;
+                entries.put(key, value);
+            }
 
-        private static synchronized Rectangle2D getBounds(String text, Font font) {
-            return forMeasuring.getFontMetrics(font).getStringBounds(text, forMeasuring);
+            synchronized void trim() {
+                while (entries.size() > perStripe) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
         }
     }
 }
@@ -0,0 +1,561 @@
+package me.jjfoley.gfx;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A grid of tiles (walls, grass, water) as big as you like, drawn through a
+ * {@link Camera}. Each tile is an int id, and 0 ({@link #EMPTY}) means no tile.
+ * 
+ * <pre>
+ * {@code
+TileMap map = new TileMap(32, (g, id, x, y, size) -> atlas.draw(g, id, x, y));
+map.set(3, 4, WALL);
+...
+public void draw(Graphics2D g) {
+	map.draw(g, camera, getWidth(), getHeight());
+}
+}
+ * </pre>
+ * 
+ * The map is split into square chunks of tiles. Each chunk is drawn into an
+ * image once and then reused every frame, and only the chunks that are on the
+ * screen are looked at, so scrolling around a huge map costs about the same as
+ * a small one. Changing a tile only redraws that tile in its chunk's image.
+ * Chunks with no tiles take no memory, and chunk images are kept under a
+ * memory budget, most recently seen first (see {@link #setCacheBudget(long)}).
+ * 
+ * Use it from {@link GFX#update} and {@link GFX#draw}, but not from both at
+ * once with {@link GFX#setPipelined(boolean)}.
+ * 
+ * @author jfoley
+ * 
+ */
+public class TileMap {
+	/**
+	 * The id of an empty tile; empty tiles are not drawn.
+	 */
+	public static final int EMPTY = 0;
+	/**
+	 * The default width and height of a chunk, in tiles.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16;
+	/**
+	 * The default memory budget for chunk images: 64 megabytes, like
+	 * {@link ImageAssets#DEFAULT_BUDGET}.
+	 */
+	public static final long DEFAULT_CACHE_BUDGET = 64L << 20;
+
+	/**
+	 * One square of tiles, and maybe a picture of it.
+	 */
+	private static final class Chunk {
+		final int cx;
+		final int cy;
+		/**
+		 * The tile ids, row by row.
+		 */
+		final int[] tiles;
+		/**
+		 * How many tiles are not empty.
+		 */
+		int filled;
+		/**
+		 * The picture of this chunk, or null if it isn't cached.
+		 */
+		BufferedImage image;
+		/**
+		 * The whole picture needs drawing again.
+		 */
+		boolean allDirty = true;
+		/**
+		 * Tiles (as indexes into {@link #tiles}) to draw again, if not all.
+		 */
+		final IntList dirty = new IntList();
+		/**
+		 * Neighbors in the list of cached chunks, oldest first.
+		 */
+		Chunk older;
+		Chunk newer;
+
+		Chunk(int cx, int cy, int size) {
+			this.cx = cx;
+			this.cy = cy;
+			this.tiles = new int[size * size];
+		}
+	}
+
+	private final int tileSize;
+	private final int chunkSize;
+	/**
+	 * The width and height of a chunk, in pixels.
+	 */
+	private final int chunkPixels;
+	/**
+	 * About how much memory one chunk image takes.
+	 */
+	private final long chunkBytes;
+	private final TilePainter painter;
+	private final PointMap<Chunk> chunks = new PointMap<>();
+
+	/**
+	 * Chunks with pictures, least recently drawn first.
+	 */
+	private Chunk oldest;
+	private Chunk newest;
+	private int cached;
+	private long cacheBudget = DEFAULT_CACHE_BUDGET;
+	/**
+	 * A dropped chunk image, kept to reuse for the next chunk that needs one.
+	 */
+	private BufferedImage spare;
+
+	private int lastDrawn;
+	private long chunkRenders;
+	private long tileRenders;
+	private long evictions;
+
+	/**
+	 * Create an empty map with {@link #DEFAULT_CHUNK_SIZE} chunks.
+	 * 
+	 * @param tileSize The width and height of a tile, in pixels.
+	 * @param painter  Draws a tile by id.
+	 */
+	public TileMap(int tileSize, TilePainter painter) {
+		this(tileSize, DEFAULT_CHUNK_SIZE, painter);
+	}
+
+	/**
+	 * Create an empty map.
+	 * 
+	 * @param tileSize  The width and height of a tile, in pixels.
+	 * @param chunkSize The width and height of a chunk, in tiles. Bigger chunks
+	 *                  mean fewer images to draw, but more to redraw when one
+	 *                  changes completely.
+	 * @param painter   Draws a tile by id.
+	 */
+	public TileMap(int tileSize, int chunkSize, TilePainter painter) {
+		if (tileSize < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("sizes must be positive: " + tileSize + ", " + chunkSize);
+		}
+		if ((long) tileSize * chunkSize > 4096) {
+			throw new IllegalArgumentException(
+					"chunks would be too big: " + tileSize + " * " + chunkSize + " > 4096 pixels");
+		}
+		this.tileSize = tileSize;
+		this.chunkSize = chunkSize;
+		this.chunkPixels = tileSize * chunkSize;
+		this.chunkBytes = (long) chunkPixels * chunkPixels * Integer.BYTES;
+		this.painter = painter;
+	}
+
+	/**
+	 * @return The width and height of a tile, in pixels.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * @return The width and height of a chunk, in tiles.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @param worldX A position in the world, e.g., from
+	 *               {@link Camera#toWorldX(double)}.
+	 * @return The column of the tile there.
+	 */
+	public int tileX(double worldX) {
+		return (int) Math.floor(worldX / tileSize);
+	}
+
+	/**
+	 * @param worldY A position in the world, e.g., from
+	 *               {@link Camera#toWorldY(double)}.
+	 * @return The row of the tile there.
+	 */
+	public int tileY(double worldY) {
+		return (int) Math.floor(worldY / tileSize);
+	}
+
+	/**
+	 * @param x The column of a tile; may be negative.
+	 * @param y The row of a tile; may be negative.
+	 * @return Its id, or {@link #EMPTY}.
+	 */
+	public int get(int x, int y) {
+		Chunk c = chunks.get(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize));
+		if (c == null) {
+			return EMPTY;
+		}
+		return c.tiles[index(x, y)];
+	}
+
+	/**
+	 * @param p The column and row of a tile.
+	 * @return Its id, or {@link #EMPTY}.
+	 */
+	public int get(IntPoint p) {
+		return get(p.x, p.y);
+	}
+
+	/**
+	 * Change a tile. Only that tile is drawn again.
+	 * 
+	 * @param x    The column of the tile; may be negative.
+	 * @param y    The row of the tile; may be negative.
+	 * @param tile The new id, or {@link #EMPTY} to remove it.
+	 * @return The old id.
+	 */
+	public int set(int x, int y, int tile) {
+		final int cx = Math.floorDiv(x, chunkSize);
+		final int cy = Math.floorDiv(y, chunkSize);
+		Chunk c = chunks.get(cx, cy);
+		if (c == null) {
+			if (tile == EMPTY) {
+				return EMPTY;
+			}
+			c = new Chunk(cx, cy, chunkSize);
+			chunks.put(cx, cy, c);
+		}
+		final int i = index(x, y);
+		final int old = c.tiles[i];
+		if (old == tile) {
+			return old;
+		}
+		c.tiles[i] = tile;
+		if (old == EMPTY) {
+			c.filled++;
+		} else if (tile == EMPTY && --c.filled == 0) {
+			// Nothing left to draw; forget the chunk.
+			chunks.remove(cx, cy);
+			uncache(c);
+			return old;
+		}
+		markDirty(c, i);
+		return old;
+	}
+
+	/**
+	 * Change a tile.
+	 * 
+	 * @param p    The column and row of the tile.
+	 * @param tile The new id, or {@link #EMPTY} to remove it.
+	 * @return The old id.
+	 */
+	public int set(IntPoint p, int tile) {
+		return set(p.x, p.y, tile);
+	}
+
+	/**
+	 * Set every tile in a rectangle.
+	 * 
+	 * @param x      The left column.
+	 * @param y      The top row.
+	 * @param width  How many columns.
+	 * @param height How many rows.
+	 * @param tile   The id, or {@link #EMPTY} to clear them.
+	 */
+	public void fill(int x, int y, int width, int height, int tile) {
+		for (int ty = y; ty < y + height; ty++) {
+			for (int tx = x; tx < x + width; tx++) {
+				set(tx, ty, tile);
+			}
+		}
+	}
+
+	/**
+	 * Draw one tile again the next time it is on screen, e.g., because what its
+	 * id looks like has changed.
+	 * 
+	 * @param x The column of the tile.
+	 * @param y The row of the tile.
+	 */
+	public void invalidate(int x, int y) {
+		Chunk c = chunks.get(Math.floorDiv(x, chunkSize), Math.floorDiv(y, chunkSize));
+		if (c != null) {
+			markDirty(c, index(x, y));
+		}
+	}
+
+	/**
+	 * Draw every tile again the next time it is on screen.
+	 */
+	public void invalidateAll() {
+		chunks.forEach((cx, cy, c) -> c.allDirty = true);
+	}
+
+	/**
+	 * Remove every tile.
+	 */
+	public void clear() {
+		while (oldest != null) {
+			uncache(oldest);
+		}
+		spare = null;
+		chunks.clear();
+	}
+
+	/**
+	 * Change the memory budget for chunk images. When they add up to more than
+	 * this, the ones seen least recently are dropped (and drawn again if they
+	 * come back). If more chunks than fit are on screen at once (zoomed far
+	 * out), some are drawn again every frame. The chunk being drawn is always
+	 * kept, even if it alone is over the budget.
+	 * 
+	 * @param bytes How many bytes of chunk images to keep.
+	 */
+	public void setCacheBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("bytes must not be negative: " + bytes);
+		}
+		this.cacheBudget = bytes;
+		evict(null);
+	}
+
+	/**
+	 * @return The memory budget for chunk images, in bytes.
+	 */
+	public long getCacheBudget() {
+		return cacheBudget;
+	}
+
+	/**
+	 * @return How many chunks have at least one tile.
+	 */
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * @return How many chunk images are kept right now.
+	 */
+	public int getCachedChunks() {
+		return cached;
+	}
+
+	/**
+	 * @return About how many bytes the kept chunk images take up.
+	 */
+	public long getCachedBytes() {
+		return cached * chunkBytes;
+	}
+
+	/**
+	 * @return How many chunks the last {@link #draw} drew.
+	 */
+	public int getLastDrawnChunks() {
+		return lastDrawn;
+	}
+
+	/**
+	 * @return How many times a whole chunk has been drawn into its image.
+	 */
+	public long getChunkRenders() {
+		return chunkRenders;
+	}
+
+	/**
+	 * @return How many times the painter has been called.
+	 */
+	public long getTileRenders() {
+		return tileRenders;
+	}
+
+	/**
+	 * @return How many chunk images were dropped to stay under the budget.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Draw the part of the map the camera sees.
+	 * 
+	 * @param g          The graphics to draw to.
+	 * @param camera     Which part of the map to show.
+	 * @param viewWidth  The width of the screen, e.g., {@link GFX#getWidth()}.
+	 * @param viewHeight The height of the screen.
+	 */
+	public void draw(Graphics2D g, Camera camera, int viewWidth, int viewHeight) {
+		lastDrawn = 0;
+		final double zoom = camera.getZoom();
+		final double camX = camera.getX();
+		final double camY = camera.getY();
+		final int cx0 = (int) Math.floor(camX / chunkPixels);
+		final int cy0 = (int) Math.floor(camY / chunkPixels);
+		final int cx1 = (int) Math.floor((camX + viewWidth / zoom) / chunkPixels);
+		final int cy1 = (int) Math.floor((camY + viewHeight / zoom) / chunkPixels);
+
+		if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) <= chunks.size()) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					Chunk c = chunks.get(cx, cy);
+					if (c != null) {
+						drawChunk(g, c, camX, camY, zoom);
+					}
+				}
+			}
+		} else {
+			// Zoomed far out over a small map: fewer chunks than places to look.
+			chunks.forEach((cx, cy, c) -> {
+				if (cx >= cx0 && cx <= cx1 && cy >= cy0 && cy <= cy1) {
+					drawChunk(g, c, camX, camY, zoom);
+				}
+			});
+		}
+	}
+
+	private void drawChunk(Graphics2D g, Chunk c, double camX, double camY, double zoom) {
+		render(c);
+		lastDrawn++;
+		// Round both edges the same way, so neighbors meet without gaps.
+		final int sx0 = (int) Math.round(((long) c.cx * chunkPixels - camX) * zoom);
+		final int sy0 = (int) Math.round(((long) c.cy * chunkPixels - camY) * zoom);
+		final int sx1 = (int) Math.round(((long) (c.cx + 1) * chunkPixels - camX) * zoom);
+		final int sy1 = (int) Math.round(((long) (c.cy + 1) * chunkPixels - camY) * zoom);
+		g.drawImage(c.image, sx0, sy0, sx1 - sx0, sy1 - sy0, null);
+		evict(c);
+	}
+
+	/**
+	 * Make sure a chunk's picture exists and is up to date, and mark it as the
+	 * most recently used.
+	 */
+	private void render(Chunk c) {
+		if (c.image == null) {
+			if (spare != null) {
+				c.image = spare;
+				spare = null;
+			} else {
+				c.image = ImageAssets.createCompatible(chunkPixels, chunkPixels);
+			}
+			c.allDirty = true;
+			cached++;
+		} else {
+			unlink(c);
+		}
+		link(c);
+
+		if (!c.allDirty && c.dirty.isEmpty()) {
+			return;
+		}
+		Graphics2D cg = c.image.createGraphics();
+		try {
+			if (c.allDirty) {
+				cg.setComposite(AlphaComposite.Clear);
+				cg.fillRect(0, 0, chunkPixels, chunkPixels);
+				cg.setComposite(AlphaComposite.SrcOver);
+				for (int i = 0; i < c.tiles.length; i++) {
+					paintTile(cg, c, i);
+				}
+				chunkRenders++;
+			} else {
+				for (int k = 0; k < c.dirty.size(); k++) {
+					final int i = c.dirty.get(k);
+					final int px = (i % chunkSize) * tileSize;
+					final int py = (i / chunkSize) * tileSize;
+					cg.setComposite(AlphaComposite.Clear);
+					cg.fillRect(px, py, tileSize, tileSize);
+					cg.setComposite(AlphaComposite.SrcOver);
+					// Keep a tile from drawing over its neighbors.
+					cg.setClip(px, py, tileSize, tileSize);
+					paintTile(cg, c, i);
+					cg.setClip(null);
+				}
+			}
+		} finally {
+			cg.dispose();
+		}
+		c.allDirty = false;
+		c.dirty.clear();
+	}
+
+	private void paintTile(Graphics2D g, Chunk c, int i) {
+		final int tile = c.tiles[i];
+		if (tile != EMPTY) {
+			painter.paint(g, tile, (i % chunkSize) * tileSize, (i / chunkSize) * tileSize, tileSize);
+			tileRenders++;
+		}
+	}
+
+	/**
+	 * Remember that one tile of a chunk needs drawing again.
+	 */
+	private void markDirty(Chunk c, int i) {
+		if (c.image == null || c.allDirty) {
+			return;
+		}
+		c.dirty.add(i);
+		if (c.dirty.size() > c.tiles.length / 4) {
+			// Cheaper to start over than to clear tiles one by one.
+			c.allDirty = true;
+			c.dirty.clear();
+		}
+	}
+
+	/**
+	 * Drop the least recently drawn chunk images until we are under the budget.
+	 * 
+	 * @param keep A chunk not to drop (the one just drawn), or null.
+	 */
+	private void evict(Chunk keep) {
+		while (cached * chunkBytes > cacheBudget && oldest != null && oldest != keep) {
+			uncache(oldest);
+			evictions++;
+		}
+	}
+
+	private void uncache(Chunk c) {
+		if (c.image == null) {
+			return;
+		}
+		unlink(c);
+		if (spare == null) {
+			spare = c.image;
+		} else {
+			c.image.flush();
+		}
+		c.image = null;
+		c.dirty.clear();
+		c.allDirty = true;
+		cached--;
+	}
+
+	private void link(Chunk c) {
+		c.older = newest;
+		c.newer = null;
+		if (newest != null) {
+			newest.newer = c;
+		} else {
+			oldest = c;
+		}
+		newest = c;
+	}
+
+	private void unlink(Chunk c) {
+		if (c.older != null) {
+			c.older.newer = c.newer;
+		} else {
+			oldest = c.newer;
+		}
+		if (c.newer != null) {
+			c.newer.older = c.older;
+		} else {
+			newest = c.older;
+		}
+		c.older = null;
+		c.newer = null;
+	}
+
+	/**
+	 * @return Where tile (x, y) is in its chunk's array.
+	 */
+	private int index(int x, int y) {
+		return Math.floorMod(y, chunkSize) * chunkSize + Math.floorMod(x, chunkSize);
+	}
+}
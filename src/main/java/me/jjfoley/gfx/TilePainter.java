@@ -0,0 +1,29 @@
+package me.jjfoley.gfx;
+
+import java.awt.Graphics2D;
+
+/**
+ * Draws one tile of a {@link TileMap}. It is only called when a tile's part of
+ * the map needs to be drawn again, not every frame.
+ * 
+ * <pre>
+ * {@code
+TileMap map = new TileMap(32, (g, id, x, y, size) -> atlas.draw(g, id, x, y));
+}
+ * </pre>
+ * 
+ * @author jfoley
+ */
+@FunctionalInterface
+public interface TilePainter {
+	/**
+	 * Draw a tile. The area has already been cleared.
+	 * 
+	 * @param g    The graphics to draw with.
+	 * @param tile The tile id; never {@link TileMap#EMPTY}.
+	 * @param x    Where the left edge of the tile goes.
+	 * @param y    Where the top edge of the tile goes.
+	 * @param size The width and height of the tile.
+	 */
+	void paint(Graphics2D g, int tile, int x, int y, int size);
+}
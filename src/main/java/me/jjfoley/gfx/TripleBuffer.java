@@ -0,0 +1,110 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Three copies of some state, so one thread can write the next version while
+ * another reads the latest finished one, and neither ever waits. This is how
+ * {@link GFX#update} hands its results to {@link GFX#draw} when running with
+ * {@link GFX#setPipelined(boolean)}.
+ * 
+ * <pre>
+ * {@code
+TripleBuffer<Scene> scenes = new TripleBuffer<>(Scene::new);
+
+public void update(double dt) {
+	Scene next = scenes.getBack();
+	next.copyFrom(world); // fill in everything draw needs.
+	scenes.publish();
+}
+
+public void draw(Graphics2D g) {
+	scenes.acquire();
+	Scene latest = scenes.getFront();
+	...
+}
+}
+ * </pre>
+ * 
+ * Only one thread may write and only one thread may read. The writer must fill
+ * in the whole back buffer every time: it holds whatever was written a few
+ * frames ago.
+ * 
+ * @author jfoley
+ *
+ * @param <S> The type of state, e.g., a class holding positions.
+ */
+public class TripleBuffer<S> {
+	/**
+	 * Set in {@link #middle} when the middle buffer has not been read yet.
+	 */
+	private static final int FRESH = 4;
+
+	private final Object[] buffers = new Object[3];
+	/**
+	 * Index of the buffer between the writer and the reader, plus maybe
+	 * {@link #FRESH}.
+	 */
+	private final AtomicInteger middle = new AtomicInteger(1);
+	/**
+	 * Index of the buffer the writer owns.
+	 */
+	private int back = 0;
+	/**
+	 * Index of the buffer the reader owns.
+	 */
+	private int front = 2;
+
+	/**
+	 * Create three copies of the state.
+	 * 
+	 * @param factory Makes a new, empty state.
+	 */
+	public TripleBuffer(Supplier<S> factory) {
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = factory.get();
+		}
+	}
+
+	/**
+	 * Get the state to write the next version into. Writer only.
+	 * 
+	 * @return The back buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	public S getBack() {
+		return (S) buffers[back];
+	}
+
+	/**
+	 * Hand the back buffer to the reader, and get a new one to write. Writer
+	 * only.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & 3;
+	}
+
+	/**
+	 * Switch to the newest published state, if there is one. Reader only.
+	 * 
+	 * @return true if {@link #getFront()} changed.
+	 */
+	public boolean acquire() {
+		if ((middle.get() & FRESH) == 0) {
+			return false;
+		}
+		front = middle.getAndSet(front) & 3;
+		return true;
+	}
+
+	/**
+	 * Get the state most recently acquired. Reader only.
+	 * 
+	 * @return The front buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	public S getFront() {
+		return (S) buffers[front];
+	}
+}
@@ -0,0 +1,146 @@
+package me.jjfoley.gfx;
+
+import java.util.Arrays;
+
+/**
+ * A {@link SpatialIndex} that cuts the world into square cells of one size,
+ * and remembers which objects touch each cell. It is the fastest choice when
+ * objects are roughly the size of a cell or smaller. Objects outside the world
+ * are kept in the cells along its edge, so they are still found, just more
+ * slowly.
+ * 
+ * @author jfoley
+ *
+ */
+public class UniformGrid extends SpatialIndex {
+	private final double originX;
+	private final double originY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	private final Buckets cells;
+	/**
+	 * Per object: the range of cells it is in (minCol, minRow, maxCol, maxRow).
+	 */
+	private int[] range = new int[4 * 64];
+
+	/**
+	 * Create a grid covering (0, 0) to (width, height), e.g., the window.
+	 * 
+	 * @param width    The width of the world.
+	 * @param height   The height of the world.
+	 * @param cellSize The width and height of each cell; about the size of a
+	 *                 typical object works well.
+	 */
+	public UniformGrid(double width, double height, double cellSize) {
+		this(0, 0, width, height, cellSize);
+	}
+
+	/**
+	 * Create a grid covering part of the world.
+	 * 
+	 * @param x        The left edge of the world.
+	 * @param y        The top edge of the world.
+	 * @param width    The width of the world.
+	 * @param height   The height of the world.
+	 * @param cellSize The width and height of each cell.
+	 */
+	public UniformGrid(double x, double y, double width, double height, double cellSize) {
+		if (!(cellSize > 0) || !(width > 0) || !(height > 0)) {
+			throw new IllegalArgumentException("width, height and cellSize must be positive");
+		}
+		this.originX = x;
+		this.originY = y;
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+		this.cells = new Buckets(columns * rows);
+	}
+
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / cellSize)));
+	}
+
+	@Override
+	void ensureCapacity(int n) {
+		super.ensureCapacity(n);
+		if (range.length < 4 * present.length) {
+			range = Arrays.copyOf(range, 4 * present.length);
+		}
+	}
+
+	@Override
+	void link(int id) {
+		final int b = 4 * id;
+		final int c0 = column(box[b]);
+		final int r0 = row(box[b + 1]);
+		final int c1 = column(box[b + 2]);
+		final int r1 = row(box[b + 3]);
+		range[b] = c0;
+		range[b + 1] = r0;
+		range[b + 2] = c1;
+		range[b + 3] = r1;
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				cells.add(r * columns + c, id);
+			}
+		}
+	}
+
+	@Override
+	void unlink(int id) {
+		final int b = 4 * id;
+		for (int r = range[b + 1]; r <= range[b + 3]; r++) {
+			for (int c = range[b]; c <= range[b + 2]; c++) {
+				cells.remove(r * columns + c, id);
+			}
+		}
+	}
+
+	@Override
+	void relink(int id, double minX, double minY, double maxX, double maxY) {
+		final int b = 4 * id;
+		setBox(id, minX, minY, maxX, maxY);
+		// Most moves stay in the same cells: then there is nothing else to do.
+		if (column(box[b]) == range[b] && row(box[b + 1]) == range[b + 1] && column(box[b + 2]) == range[b + 2]
+				&& row(box[b + 3]) == range[b + 3]) {
+			return;
+		}
+		unlink(id);
+		link(id);
+	}
+
+	@Override
+	public boolean queryRect(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+		final int stamp = nextStamp();
+		final int c0 = column(minX);
+		final int c1 = column(maxX);
+		final int r0 = row(minY);
+		final int r1 = row(maxY);
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				final int cell = r * columns + c;
+				for (int i = 0; i < cells.size(cell); i++) {
+					final int id = cells.get(cell, i);
+					if (seen[id] == stamp) {
+						continue;
+					}
+					seen[id] = stamp;
+					if (overlaps(id, minX, minY, maxX, maxY) && !visitor.visit(id)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	double initialSearchRadius() {
+		return cellSize;
+	}
+}
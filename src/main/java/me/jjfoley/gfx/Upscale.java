@@ -0,0 +1,34 @@
+package me.jjfoley.gfx;
+
+import java.awt.RenderingHints;
+
+/**
+ * How to stretch a frame drawn at a lower {@link GFX#setRenderScale(double)
+ * render scale} up to the size of the window.
+ * 
+ * @author jfoley
+ * 
+ */
+public enum Upscale {
+	/**
+	 * Blocky, and the fastest.
+	 */
+	NEAREST(RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR),
+	/**
+	 * Smooth; the default.
+	 */
+	BILINEAR(RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+	/**
+	 * Smooth and a little sharper, but slower.
+	 */
+	BICUBIC(RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+
+	/**
+	 * The value for {@link RenderingHints#KEY_INTERPOLATION}.
+	 */
+	final Object hint;
+
+	Upscale(Object hint) {
+		this.hint = hint;
+	}
+}
@@ -35,4 +35,34 @@ public class Util {
     public static <K, V> Map<K, V> makeMap() {
         return new HashMap<K, V>();
     }
+
+    /**
+     * @return A new list of ints that does not box each number.
+     */
+    public static IntList makeIntList() {
+        return new IntList();
+    }
+
+    /**
+     * @return A new list of doubles that does not box each number.
+     */
+    public static DoubleList makeDoubleList() {
+        return new DoubleList();
+    }
+
+    /**
+     * @return A new set of (x,y) points; use it instead of a {@code Set<IntPoint>}.
+     */
+    public static PointSet makePointSet() {
+        return new PointSet();
+    }
+
+    /**
+     * @param <V> The type of the values.
+     * @return A new map from (x,y) points to values; use it instead of a
+     *         {@code Map<IntPoint, V>}.
+     */
+    public static <V> PointMap<V> makePointMap() {
+        return new PointMap<V>();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package me.jjfoley.gfx;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the default executor for {@link GFX#runAsync}. This is the version
+ * for Java 21 and up: every task gets its own virtual thread, so tasks that
+ * wait (on files or the network) are cheap.
+ * 
+ * @author jfoley
+ * 
+ */
+final class AsyncThreads {
+	private AsyncThreads() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return true if tasks run on virtual threads.
+	 */
+	static boolean isVirtual() {
+		return true;
+	}
+
+	/**
+	 * @param name What to call the threads.
+	 * @return A new executor for background tasks.
+	 */
+	static ExecutorService create(String name) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+	}
+}
@@ -0,0 +1,66 @@
+package me.jjfoley.gfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Graphics2D;
+
+import org.junit.Test;
+
+/**
+ * Checks that clicks between two frames are not lost.
+ * 
+ * @author jfoley
+ * 
+ */
+public class EventManagerTest {
+	static {
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	/**
+	 * An application that draws nothing.
+	 */
+	static class Blank extends GFX {
+		@Override
+		public void draw(Graphics2D g) {
+		}
+	}
+
+	private static void click(GFX app, int x, int y) {
+		app.getEventManager().onMouse(GFXEvent.Type.MOUSE_PRESSED, 0, x, y, 1, 0, 1);
+		app.getEventManager().onMouse(GFXEvent.Type.MOUSE_RELEASED, 0, x, y, 1, 0, 1);
+	}
+
+	@Test
+	public void processClickReturnsEveryClick() {
+		Blank app = new Blank();
+		click(app, 1, 2);
+		click(app, 3, 4);
+		click(app, 5, 6);
+		assertEquals(new IntPoint(1, 2), app.processClick());
+		assertEquals(new IntPoint(3, 4), app.processClick());
+		assertEquals(new IntPoint(5, 6), app.processClick());
+		assertNull(app.processClick());
+	}
+
+	@Test
+	public void processClickLeavesPollEventsAlone() {
+		Blank app = new Blank();
+		click(app, 1, 2);
+		assertEquals(new IntPoint(1, 2), app.processClick());
+		GFXEvent[] events = new GFXEvent[8];
+		assertEquals(2, app.pollEvents(events));
+		assertEquals(GFXEvent.Type.MOUSE_RELEASED, events[1].getType());
+	}
+
+	@Test
+	public void processClickDropsOldestWhenFull() {
+		Blank app = new Blank();
+		final int n = EventManager.CLICK_CAPACITY + 3;
+		for (int i = 0; i < n; i++) {
+			click(app, i, 0);
+		}
+		assertEquals(new IntPoint(3, 0), app.processClick());
+	}
+}
@@ -0,0 +1,72 @@
+package me.jjfoley.gfx;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Checks that interrupting the frame loop stops it, instead of leaving it to
+ * spin with the interrupt flag set.
+ * 
+ * @author jfoley
+ * 
+ */
+public class FrameSchedulerTest {
+	static {
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	/**
+	 * Counts its updates and draws nothing.
+	 */
+	static class Counter extends GFX {
+		final AtomicLong updates = new AtomicLong();
+
+		@Override
+		public void update(double dt) {
+			updates.incrementAndGet();
+		}
+
+		@Override
+		public void draw(Graphics2D g) {
+		}
+	}
+
+	private static Thread startLoop(GFX app) throws InterruptedException {
+		Thread loop = new Thread(app::startHeadless, "test-loop");
+		loop.setDaemon(true);
+		loop.start();
+		// Let it get going.
+		Thread.sleep(200);
+		assertTrue(app.isRunning());
+		return loop;
+	}
+
+	@Test
+	public void interruptStopsPacedLoop() throws InterruptedException {
+		Counter app = new Counter();
+		app.getScheduler().setTargetFps(50);
+		Thread loop = startLoop(app);
+		loop.interrupt();
+		loop.join(2000);
+		assertFalse("loop should exit when interrupted", loop.isAlive());
+		assertFalse(app.isRunning());
+		// Even the time before the interrupt was paced, not a busy loop.
+		assertTrue("updates: " + app.updates.get(), app.updates.get() < 50);
+	}
+
+	@Test
+	public void interruptStopsSleepingLoop() throws InterruptedException {
+		Counter app = new Counter();
+		app.setRenderOnDemand(true);
+		Thread loop = startLoop(app);
+		loop.interrupt();
+		loop.join(2000);
+		assertFalse("loop should exit when interrupted", loop.isAlive());
+		assertFalse(app.isRunning());
+	}
+}